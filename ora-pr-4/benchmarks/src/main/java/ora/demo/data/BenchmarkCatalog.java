@@ -0,0 +1,142 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.ResourceBundle;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * {@code BenchmarkCatalog} creates the data folders the benchmarks load and
+ * the product managers that load them.
+ * <br>
+ * Data folders are generated once per catalog size and review depth, under
+ * {@code ora-benchmarks} in the temporary directory, and reused by later runs.
+ * Each product manager gets empty temp and reports folders, so it loads the
+ * data folder instead of restoring a snapshot.
+ */
+final class BenchmarkCatalog {
+	private static final Path ROOT = Path.of(System.getProperty("java.io.tmpdir"), "ora-benchmarks");
+	
+	private final int products;
+	private final int reviews;
+	private final Path dataFolder;
+	private Path workFolder;
+	
+	/**
+	 * @param products number of products, with ids from 1.
+	 * @param reviews number of reviews of each product.
+	 */
+	BenchmarkCatalog(int products, int reviews) {
+		this.products = products;
+		this.reviews = reviews;
+		this.dataFolder = ROOT.resolve("data-" + products + "-" + reviews);
+	}
+	
+	int getProducts() {
+		return products;
+	}
+	
+	/**
+	 * Creates a product manager loading the data folder. Configuration keys
+	 * can be overridden with {@code ora.demo.data.<key>} system properties
+	 * before calling it.
+	 */
+	ProductManager open() {
+		try {
+			generate();
+			close();
+			
+			Files.createDirectories(ROOT);
+			workFolder = Files.createTempDirectory(ROOT, "work-");
+			Path reportsFolder = Files.createDirectory(workFolder.resolve("reports"));
+			Path tempFolder = Files.createDirectory(workFolder.resolve("temp"));
+			
+			System.setProperty("ora.demo.data.data.folder", dataFolder.toString());
+			System.setProperty("ora.demo.data.reports.folder", reportsFolder.toString());
+			System.setProperty("ora.demo.data.temp.folder", tempFolder.toString());
+			
+			return new ProductManager();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Deletes the temp and reports folders of the last product manager.
+	 */
+	void close() throws IOException {
+		if (workFolder != null) {
+			try (Stream<Path> files = Files.walk(workFolder)) {
+				for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+					Files.delete(file);
+				}
+			}
+			workFolder = null;
+		}
+	}
+	
+	/**
+	 * Generates the data folder, unless a previous run already did.
+	 */
+	void generate() throws IOException {
+		Path complete = dataFolder.resolve("complete");
+		
+		if (Files.exists(complete)) {
+			return;
+		}
+		
+		ResourceBundle config = ResourceBundle.getBundle("ora.demo.data.config");
+		SplittableRandom random = new SplittableRandom(products);
+		LocalDate today = LocalDate.now();
+		
+		Files.createDirectories(dataFolder);
+		
+		for (int id = 1; id <= products; id++) {
+			String price = String.format("%d.%02d", 1 + random.nextInt(20), random.nextInt(100));
+			int rating = random.nextInt(6);
+			String product = id % 2 == 0
+					? "F," + id + ",Food " + id + "," + price + "," + rating + "," + today.plusDays(random.nextInt(30))
+					: "D," + id + ",Drink " + id + "," + price + "," + rating + ",";
+			
+			Files.writeString(dataFolder.resolve(MessageFormat.format(config.getString("product.data.file"), id)),
+					product, StandardCharsets.UTF_8);
+			
+			if (reviews > 0) {
+				StringBuilder txt = new StringBuilder();
+				
+				for (int i = 0; i < reviews; i++) {
+					txt.append(1 + random.nextInt(5)).append(",Review ").append(i).append(" of product ").append(id).append('\n');
+				}
+				
+				Files.writeString(dataFolder.resolve(MessageFormat.format(config.getString("reviews.data.file"), id)),
+						txt, StandardCharsets.UTF_8);
+			}
+		}
+		
+		Files.createFile(complete);
+	}
+}
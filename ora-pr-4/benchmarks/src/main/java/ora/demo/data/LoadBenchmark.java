@@ -0,0 +1,82 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading the data folder when a {@link ProductManager} starts
+ * without a snapshot. Every invocation creates a new instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+	
+	@Param({"1000", "10000", "100000", "1000000"})
+	private int products;
+	
+	@Param({"0", "10"})
+	private int reviews;
+	
+	/**
+	 * Number of loader threads, 0 for one per processor.
+	 */
+	@Param({"1", "0"})
+	private String loaderThreads;
+	
+	private BenchmarkCatalog catalog;
+	private ProductManager pm;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		System.setProperty("ora.demo.data.loader.threads", loaderThreads);
+		catalog = new BenchmarkCatalog(products, reviews);
+		catalog.generate();
+	}
+	
+	@TearDown(Level.Invocation)
+	public void closeProductManager() throws IOException {
+		pm.close();
+		catalog.close();
+	}
+	
+	@Benchmark
+	public ProductManager loadAllData() {
+		pm = catalog.open();
+		return pm;
+	}
+}
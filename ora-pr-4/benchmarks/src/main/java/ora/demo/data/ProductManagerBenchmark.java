@@ -0,0 +1,148 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the operations of {@link ProductManager} used by the shop clients,
+ * on a catalog loaded from generated data files.
+ * <br>
+ * Benchmarks run on a single thread by default, use {@code -t} to run them
+ * on more threads. The {@code mixed} group runs lookups and reviews at the
+ * same time on four threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductManagerBenchmark {
+	
+	@Param({"1000", "10000", "100000", "1000000"})
+	private int products;
+	
+	@Param({"0", "10"})
+	private int reviews;
+	
+	/**
+	 * Journal sync policy, reviews are not slowed down by the disk unless
+	 * it is {@code ALWAYS}.
+	 */
+	@Param({"NEVER"})
+	private String journalSync;
+	
+	private BenchmarkCatalog catalog;
+	private ProductManager pm;
+	private PrintStream out;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		System.setProperty("ora.demo.data.journal.sync", journalSync);
+		// Reports are written as soon as they are requested.
+		System.setProperty("ora.demo.data.report.coalesce.millis", "0");
+		
+		catalog = new BenchmarkCatalog(products, reviews);
+		pm = catalog.open();
+		
+		// printProducts writes the catalog to the standard output.
+		out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		System.setOut(out);
+		pm.close();
+		catalog.close();
+	}
+	
+	private int randomId() {
+		return 1 + ThreadLocalRandom.current().nextInt(products);
+	}
+	
+	@Benchmark
+	public Product findProduct() throws ProductManagerException {
+		return pm.findProduct(randomId());
+	}
+	
+	@Benchmark
+	public Product reviewProduct() {
+		return pm.reviewProduct(randomId(), Rating.FOUR_STAR, "Benchmark review");
+	}
+	
+	@Benchmark
+	public Map<String, String> getDiscounts() {
+		return pm.getDiscounts("en-GB");
+	}
+	
+	@Benchmark
+	public void printProducts() {
+		pm.printProducts(p -> p.getRating() == Rating.FOUR_STAR, Comparator.comparing(Product::getPrice), "en-GB");
+	}
+	
+	@Benchmark
+	public ProductPage findTopProducts() {
+		return pm.findProducts(new ProductQuery()
+				.ratings(Rating.FOUR_STAR)
+				.sortBy(ProductQuery.Sort.PRICE, false)
+				.limit(20));
+	}
+	
+	@Benchmark
+	public void printProductReport() {
+		pm.printProductReport(randomId(), "en-GB", "benchmark");
+	}
+	
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public Product mixedFind() throws ProductManagerException {
+		return pm.findProduct(randomId());
+	}
+	
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public Product mixedReview() {
+		return pm.reviewProduct(randomId(), Rating.THREE_STAR, "Benchmark review");
+	}
+}
@@ -0,0 +1,103 @@
+ /*
+  * Copyright (C) 2021  Bruno Mendoza
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.app;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@code LatencyHistogram} counts latencies in log-linear buckets: each
+ * power of two range is split in 16 buckets, so a percentile is reported
+ * with an error below 1/16 of its value, using a fixed amount of memory.
+ * <br>
+ * This class is thread safe, recording does not lock.
+ */
+class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+	
+	void record(long nanos) {
+		counts.incrementAndGet(index(Math.max(0, nanos)));
+		total.addAndGet(nanos);
+		max.accumulateAndGet(nanos, Math::max);
+	}
+	
+	long getCount() {
+		long count = 0;
+		
+		for (int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+		}
+		
+		return count;
+	}
+	
+	long getMax() {
+		return max.get();
+	}
+	
+	long getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : total.get() / count;
+	}
+	
+	/**
+	 * @param percentile a percentile between 0 and 100.
+	 * @return the highest latency of the bucket holding the percentile, or 0
+	 * if nothing was recorded.
+	 */
+	long getPercentile(double percentile) {
+		long count = getCount();
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		
+		for (int i = 0; i < counts.length() && count > 0; i++) {
+			seen += counts.get(i);
+			
+			if (seen >= rank) {
+				return Math.min(highestValue(i), getMax());
+			}
+		}
+		
+		return 0;
+	}
+	
+	private static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+	
+	private static long highestValue(int index) {
+		int bucket = index / SUB_BUCKETS;
+		int subBucket = index % SUB_BUCKETS;
+		
+		if (bucket == 0) {
+			return subBucket;
+		}
+		
+		return ((SUB_BUCKETS + subBucket + 1L) << (bucket - 1)) - 1;
+	}
+}
@@ -0,0 +1,72 @@
+ /*
+  * Copyright (C) 2021  Bruno Mendoza
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.app;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * {@code ProductKeys} picks the product ids requested by the shop clients,
+ * from 0 to a number of products.
+ */
+abstract class ProductKeys {
+	protected final int products;
+	
+	private ProductKeys(int products) {
+		this.products = products;
+	}
+	
+	abstract int next();
+	
+	/**
+	 * Every product is equally likely to be requested.
+	 */
+	static ProductKeys uniform(int products) {
+		return new ProductKeys(products) {
+			@Override
+			int next() {
+				return ThreadLocalRandom.current().nextInt(products);
+			}
+		};
+	}
+	
+	/**
+	 * The product with id {@code k} is requested with a probability
+	 * proportional to {@code 1 / (k + 1)^skew}, so a few hot products get most
+	 * of the requests.
+	 */
+	static ProductKeys zipfian(int products, double skew) {
+		double[] cumulative = new double[products];
+		double sum = 0;
+		
+		for (int k = 0; k < products; k++) {
+			sum += 1 / Math.pow(k + 1, skew);
+			cumulative[k] = sum;
+		}
+		
+		double total = sum;
+		
+		return new ProductKeys(products) {
+			@Override
+			int next() {
+				int k = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble(total));
+				return Math.min(k >= 0 ? k : -k - 1, products - 1);
+			}
+		};
+	}
+}
@@ -17,14 +17,20 @@
 
 package ora.demo.app;
 
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -32,28 +38,76 @@ import java.util.stream.Stream;
 
 import ora.demo.data.Product;
 import ora.demo.data.ProductManager;
+import ora.demo.data.ProductManagerException;
 import ora.demo.data.Rating;
+import ora.demo.data.VirtualThreads;
 
 /**
  * {@code Shop} class represents an application that manages Products.
+ * <br>
+ * Without a duration nor a number of operations, each client runs once:
+ * it gets the discounts, reviews a product and prints its report, and its
+ * log is printed. Otherwise clients run operations picked by the operation
+ * mix until the duration elapses or each one runs the number of operations,
+ * and the latency percentiles and throughput of each operation are printed.
+ * <br>
+ * Arguments are {@code name=value} pairs:
+ * <ul>
+ * <li>{@code clients}: number of clients, 5 by default.</li>
+ * <li>{@code threads}: number of threads running the clients, 3 by default, or
+ * {@code virtual} for a virtual thread per client on Java runtimes that support them.</li>
+ * <li>{@code duration}: seconds the clients run, 0 by default.</li>
+ * <li>{@code operations}: operations run by each client, 0 by default.</li>
+ * <li>{@code mix}: weights of the operations, {@code discounts:1,review:1,report:1,find:0} by default.</li>
+ * <li>{@code keys}: {@code uniform} or {@code zipfian} distribution of the product ids, uniform by default.</li>
+ * <li>{@code skew}: skew of the zipfian distribution, 0.99 by default.</li>
+ * <li>{@code products}: product ids are picked from 0 to this number, 63 by default.</li>
+ * </ul>
+ * The data folder of a generated catalog can be set with the
+ * {@code ora.demo.data.data.folder} system property.
  * @version 1.0
  * @author Bruno Mendoza
  */
 public class Shop {
 	
+	enum Operation {
+		DISCOUNTS, REVIEW, REPORT, FIND
+	}
+	
+	private static final Logger logger = Logger.getLogger(Shop.class.getName());
+	
 	public static void main(String[] args) {
+		try {
+			Map<String, String> options = parseOptions(args);
+			int clients = Integer.parseInt(options.getOrDefault("clients", "5"));
+			String threads = options.getOrDefault("threads", "3");
+			long duration = Long.parseLong(options.getOrDefault("duration", "0"));
+			long operations = Long.parseLong(options.getOrDefault("operations", "0"));
+			Map<Operation, Integer> mix = parseMix(options.getOrDefault("mix", "discounts:1,review:1,report:1,find:0"));
+			int products = Integer.parseInt(options.getOrDefault("products", "63"));
+			ProductKeys keys = "zipfian".equals(options.getOrDefault("keys", "uniform"))
+					? ProductKeys.zipfian(products, Double.parseDouble(options.getOrDefault("skew", "0.99")))
+					: ProductKeys.uniform(products);
+			
+			if (duration == 0 && operations == 0) {
+				runClients(clients, threads, keys);
+			} else {
+				runLoad(clients, threads, TimeUnit.SECONDS.toNanos(duration), operations, mix, keys);
+			}
+		} catch (IllegalArgumentException e) {
+			logger.log(Level.SEVERE, "Invalid arguments " + e.getMessage());
+		}
+	}
+	
+	private static void runClients(int clientNumber, String threads, ProductKeys keys) {
 		AtomicInteger clientCount = new AtomicInteger(0);
 		
 		Callable<String> client = () -> {
 			ProductManager pm = ProductManager.getInstance();
 			String clientId = "Client " + clientCount.incrementAndGet();
 			String threadName = Thread.currentThread().getName();
-			int productId = ThreadLocalRandom.current().nextInt(63);
-			String languageTag = ProductManager.getSupportedLocales()
-					.stream()
-					.skip(ThreadLocalRandom.current().nextInt(4))
-					.findFirst()
-					.get();
+			int productId = keys.next();
+			String languageTag = randomLanguageTag();
 			StringBuilder log = new StringBuilder();
 			
 			log.append(clientId + " " + threadName + "\n-\tstart of log\t-\n");
@@ -75,8 +129,8 @@ public class Shop {
 			return log.toString();
 		};
 		
-		List<Callable<String>> clients = Stream.generate(() -> client).limit(5).collect(Collectors.toList());
-		ExecutorService executorService = Executors.newFixedThreadPool(3);
+		List<Callable<String>> clients = Stream.generate(() -> client).limit(clientNumber).collect(Collectors.toList());
+		ExecutorService executorService = newExecutor(threads, Executors::newCachedThreadPool);
 		try {
 			List<Future<String>> results = executorService.invokeAll(clients);
 			executorService.shutdown();
@@ -84,12 +138,169 @@ public class Shop {
 				try {
 					System.out.println(result.get());
 				} catch (InterruptedException | ExecutionException e) {
-					Logger.getLogger(Shop.class.getName()).log(Level.SEVERE, "Error retriving client log", e);
+					logger.log(Level.SEVERE, "Error retriving client log", e);
 				}
 			});
 		} catch (InterruptedException e) {
-			Logger.getLogger(Shop.class.getName()).log(Level.SEVERE, "Error invoking clients", e);
+			logger.log(Level.SEVERE, "Error invoking clients", e);
+		}
+		
+	}
+	
+	private static void runLoad(int clientNumber, String threads, long durationNanos, long operations,
+			Map<Operation, Integer> mix, ProductKeys keys) {
+		// Load the catalog before the clock starts.
+		ProductManager pm = ProductManager.getInstance();
+		AtomicInteger clientCount = new AtomicInteger(0);
+		Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+		Operation[] weighted = mix.entrySet()
+				.stream()
+				.flatMap(entry -> Stream.generate(entry::getKey).limit(entry.getValue()))
+				.toArray(Operation[]::new);
+		
+		if (weighted.length == 0) {
+			throw new IllegalArgumentException("Empty operation mix");
+		}
+		
+		for (Operation operation : Operation.values()) {
+			latencies.put(operation, new LatencyHistogram());
+		}
+		
+		long start = System.nanoTime();
+		long deadline = start + durationNanos;
+		
+		Callable<Long> client = () -> {
+			String clientId = "Client " + clientCount.incrementAndGet();
+			long done = 0;
+			
+			while ((operations == 0 || done < operations) && (durationNanos == 0 || System.nanoTime() < deadline)) {
+				Operation operation = weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+				int productId = keys.next();
+				String languageTag = randomLanguageTag();
+				long operationStart = System.nanoTime();
+				
+				switch (operation) {
+				case DISCOUNTS:
+					pm.getDiscounts(languageTag);
+					break;
+					
+				case REVIEW:
+					pm.reviewProduct(productId, Rating.values()[ThreadLocalRandom.current().nextInt(1, 6)], "Load test review");
+					break;
+					
+				case REPORT:
+					pm.printProductReport(productId, languageTag, clientId.replace(' ', '-'));
+					break;
+					
+				case FIND:
+					try {
+						pm.findProduct(productId);
+					} catch (ProductManagerException e) {
+						// A missing product is still a lookup.
+					}
+					break;
+				}
+				
+				latencies.get(operation).record(System.nanoTime() - operationStart);
+				done++;
+			}
+			
+			return done;
+		};
+		
+		ExecutorService executorService = newExecutor(threads, Executors::newCachedThreadPool);
+		
+		try {
+			executorService.invokeAll(Stream.generate(() -> client).limit(clientNumber).collect(Collectors.toList()));
+		} catch (InterruptedException e) {
+			logger.log(Level.SEVERE, "Error invoking clients", e);
+		} finally {
+			executorService.shutdown();
+		}
+		
+		double seconds = (System.nanoTime() - start) / 1e9;
+		StringBuilder txt = new StringBuilder();
+		
+		txt.append(String.format("%d clients on %s threads, %.1f s%n", clientNumber, threads, seconds));
+		txt.append(String.format("%-10s %10s %10s %10s %10s %10s %10s %10s%n",
+				"operation", "count", "ops/s", "mean us", "p50 us", "p99 us", "p999 us", "max us"));
+		
+		latencies.forEach((operation, latency) -> {
+			if (latency.getCount() > 0) {
+				txt.append(String.format("%-10s %10d %10.0f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+						operation.name().toLowerCase(),
+						latency.getCount(),
+						latency.getCount() / seconds,
+						latency.getMean() / 1e3,
+						latency.getPercentile(50) / 1e3,
+						latency.getPercentile(99) / 1e3,
+						latency.getPercentile(99.9) / 1e3,
+						latency.getMax() / 1e3));
+			}
+		});
+		
+		System.out.print(txt);
+	}
+	
+	/**
+	 * @param threads a number of threads, or {@code virtual} for a virtual
+	 * thread per task.
+	 * @param fallback creates the executor used instead of virtual threads on
+	 * Java runtimes without them.
+	 */
+	static ExecutorService newExecutor(String threads, Supplier<ExecutorService> fallback) {
+		if ("virtual".equals(threads)) {
+			return VirtualThreads.newPerTaskExecutor(fallback);
+		}
+		
+		return Executors.newFixedThreadPool(Integer.parseInt(threads));
+	}
+	
+	private static String randomLanguageTag() {
+		Set<String> languageTags = ProductManager.getSupportedLocales();
+		
+		return languageTags
+				.stream()
+				.skip(ThreadLocalRandom.current().nextInt(languageTags.size()))
+				.findFirst()
+				.get();
+	}
+	
+	/**
+	 * Parses {@code name=value} arguments.
+	 */
+	static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			
+			if (separator < 1) {
+				throw new IllegalArgumentException("Expected name=value but was " + arg);
+			}
+			
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		
+		return options;
+	}
+	
+	/**
+	 * @param text comma separated operation:weight pairs.
+	 */
+	private static Map<Operation, Integer> parseMix(String text) {
+		Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+		
+		for (String entry : text.split(",")) {
+			String[] parts = entry.trim().split(":");
+			
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("Expected operation:weight but was " + entry);
+			}
+			
+			mix.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
 		}
 		
+		return mix;
 	}
 }
@@ -0,0 +1,462 @@
+ /*
+  * Copyright (C) 2021  Bruno Mendoza
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.app;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ora.demo.data.Food;
+import ora.demo.data.Product;
+import ora.demo.data.ProductManager;
+import ora.demo.data.ProductManagerException;
+import ora.demo.data.ProductPage;
+import ora.demo.data.ProductQuery;
+import ora.demo.data.Rateable;
+import ora.demo.data.Rating;
+
+/**
+ * {@code ShopServer} serves the products of the {@link ProductManager} over
+ * HTTP, so other services can use them without running {@link Shop}.
+ * <br>
+ * Every response is JSON. Connections are kept alive and requests pipelined
+ * on a connection are answered in order. Products and reports are written
+ * to the connection as they are produced, in chunks, and report files are
+ * not written.
+ * <ul>
+ * <li>{@code GET /products/{id}}: a product.</li>
+ * <li>{@code GET /products}: a page of products, see {@link #findProducts}.</li>
+ * <li>{@code GET /products/{id}/report?lang=en-GB}: the lines of a product report.</li>
+ * <li>{@code POST /products/{id}/reviews}: reviews a product with the {@code rating}
+ * (stars, from 0 to 5) and {@code comments} parameters, sent as a UTF-8 form or in
+ * the query.</li>
+ * <li>{@code GET /discounts?lang=en-GB}: the discounts by rating.</li>
+ * </ul>
+ * Arguments are {@code name=value} pairs:
+ * <ul>
+ * <li>{@code host}: address the server listens on, {@code localhost} by default.</li>
+ * <li>{@code port}: port the server listens on, 8080 by default.</li>
+ * <li>{@code threads}: number of threads handling requests, or {@code virtual}
+ * by default, for a virtual thread per request on Java runtimes that support them.</li>
+ * <li>{@code backlog}: maximum number of pending connections, 0 for the system default.</li>
+ * </ul>
+ * @version 1.0
+ * @author Bruno Mendoza
+ */
+public class ShopServer {
+	
+	private static final String JSON = "application/json; charset=UTF-8";
+	
+	private static final Logger logger = Logger.getLogger(ShopServer.class.getName());
+	
+	private final ProductManager pm;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	
+	/**
+	 * Creates a server, started with {@link #start()}.
+	 * @param threads a number of threads, or {@code virtual} for a virtual
+	 * thread per request.
+	 */
+	public ShopServer(ProductManager pm, InetSocketAddress address, String threads, int backlog) throws IOException {
+		this.pm = pm;
+		this.server = HttpServer.create(address, backlog);
+		// A thread per processor on Java runtimes without virtual threads.
+		this.executor = Shop.newExecutor(threads,
+				() -> Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+		
+		server.setExecutor(executor);
+		server.createContext("/products", this::handleProducts);
+		server.createContext("/discounts", this::handleDiscounts);
+	}
+	
+	public static void main(String[] args) {
+		try {
+			Map<String, String> options = Shop.parseOptions(args);
+			ShopServer server = new ShopServer(ProductManager.getInstance(),
+					new InetSocketAddress(options.getOrDefault("host", "localhost"),
+							Integer.parseInt(options.getOrDefault("port", "8080"))),
+					options.getOrDefault("threads", "virtual"),
+					Integer.parseInt(options.getOrDefault("backlog", "0")));
+			
+			Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "shop-server-stop"));
+			server.start();
+		} catch (IllegalArgumentException e) {
+			logger.log(Level.SEVERE, "Invalid arguments " + e.getMessage());
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Error starting server " + e.getMessage());
+		}
+	}
+	
+	public void start() {
+		server.start();
+		logger.log(Level.INFO, "Serving products on " + getAddress());
+	}
+	
+	/**
+	 * Stops accepting connections and waits up to a second for the requests
+	 * being handled.
+	 */
+	public void stop() {
+		server.stop(1);
+		executor.shutdown();
+	}
+	
+	/**
+	 * @return the address the server listens on, with the port picked by
+	 * the system if it was 0.
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+	
+	private void handleProducts(HttpExchange exchange) throws IOException {
+		try {
+			// "", "products", then the id and the resource of the product, if any.
+			String[] path = exchange.getRequestURI().getPath().split("/", 5);
+			Map<String, String> params = parseParams(exchange.getRequestURI().getRawQuery());
+			
+			if (!path[1].equals("products")) {
+				sendError(exchange, 404, "Unknown resource " + exchange.getRequestURI().getPath());
+			} else if (path.length == 2 || path.length == 3 && path[2].isEmpty()) {
+				if (checkMethod(exchange, "GET")) {
+					findProducts(exchange, params);
+				}
+			} else if (path.length == 3) {
+				if (checkMethod(exchange, "GET")) {
+					sendJson(exchange, 200, toJson(pm.findProduct(parseId(path[2]))));
+				}
+			} else if (path.length == 4 && path[3].equals("report")) {
+				if (checkMethod(exchange, "GET")) {
+					sendReport(exchange, parseId(path[2]), params.getOrDefault("lang", "en-GB"));
+				}
+			} else if (path.length == 4 && path[3].equals("reviews")) {
+				if (checkMethod(exchange, "POST")) {
+					reviewProduct(exchange, parseId(path[2]), params);
+				}
+			} else {
+				sendError(exchange, 404, "Unknown resource " + exchange.getRequestURI().getPath());
+			}
+		} catch (ProductManagerException e) {
+			sendError(exchange, 404, e.getMessage());
+		} catch (IllegalArgumentException | DateTimeParseException e) {
+			sendError(exchange, 400, e.getMessage());
+		} catch (RuntimeException e) {
+			logger.log(Level.SEVERE, "Error handling " + exchange.getRequestURI() + " " + e.getMessage(), e);
+			sendError(exchange, 500, "Internal error");
+		} finally {
+			// Keeps the connection open for the next request.
+			exchange.close();
+		}
+	}
+	
+	private void handleDiscounts(HttpExchange exchange) throws IOException {
+		try {
+			if (checkMethod(exchange, "GET")) {
+				Map<String, String> params = parseParams(exchange.getRequestURI().getRawQuery());
+				StringBuilder json = new StringBuilder("{");
+				
+				pm.getDiscounts(params.getOrDefault("lang", "en-GB")).forEach((stars, discount) -> {
+					if (json.length() > 1) {
+						json.append(',');
+					}
+					appendString(json, stars).append(':');
+					appendString(json, discount);
+				});
+				
+				sendJson(exchange, 200, json.append('}').toString());
+			}
+		} catch (IllegalArgumentException e) {
+			sendError(exchange, 400, e.getMessage());
+		} catch (RuntimeException e) {
+			logger.log(Level.SEVERE, "Error handling " + exchange.getRequestURI() + " " + e.getMessage(), e);
+			sendError(exchange, 500, "Internal error");
+		} finally {
+			exchange.close();
+		}
+	}
+	
+	/**
+	 * Finds a page of products. The parameters, all of them optional, are
+	 * {@code rating} (minimum stars, from 0 to 5), {@code type} ({@code food} or
+	 * {@code drink}), {@code minPrice}, {@code maxPrice}, {@code from} and
+	 * {@code to} (best before dates), {@code sort} ({@code id}, {@code name},
+	 * {@code price}, {@code rating} or {@code best_before}), {@code desc},
+	 * {@code limit} and {@code after}, the id of the last product of the
+	 * previous page. The response holds the {@code products} and, if there
+	 * are more, the {@code after} id of the next page.
+	 */
+	private void findProducts(HttpExchange exchange, Map<String, String> params) throws IOException, ProductManagerException {
+		ProductQuery query = new ProductQuery();
+		
+		if (params.containsKey("rating")) {
+			query = query.ratingAtLeast(parseRating(params.get("rating")));
+		}
+		if (params.containsKey("type")) {
+			query = query.type(ProductQuery.Type.valueOf(params.get("type").toUpperCase()));
+		}
+		if (params.containsKey("minPrice") || params.containsKey("maxPrice")) {
+			query = query.priceBetween(parseDecimal(params.get("minPrice")), parseDecimal(params.get("maxPrice")));
+		}
+		if (params.containsKey("from") || params.containsKey("to")) {
+			query = query.bestBeforeBetween(parseDate(params.get("from")), parseDate(params.get("to")));
+		}
+		if (params.containsKey("sort") || params.containsKey("desc")) {
+			query = query.sortBy(ProductQuery.Sort.valueOf(params.getOrDefault("sort", "id").toUpperCase()),
+					Boolean.parseBoolean(params.get("desc")));
+		}
+		if (params.containsKey("limit")) {
+			query = query.limit(Integer.parseInt(params.get("limit")));
+		}
+		if (params.containsKey("after")) {
+			query = query.after(pm.findProduct(parseId(params.get("after"))));
+		}
+		
+		ProductPage page = pm.findProducts(query);
+		
+		try (Writer out = openJson(exchange)) {
+			out.write("{\"products\":[");
+			
+			for (int i = 0; i < page.getProducts().size(); i++) {
+				if (i > 0) {
+					out.write(',');
+				}
+				out.write(toJson(page.getProducts().get(i)));
+			}
+			out.write(']');
+			
+			if (page.hasNext()) {
+				out.write(",\"after\":" + page.getProducts().get(page.getProducts().size() - 1).getId());
+			}
+			out.write('}');
+		}
+	}
+	
+	private void sendReport(HttpExchange exchange, int productId, String languageTag) throws IOException, ProductManagerException {
+		// Lines are formatted as they are written, so the report is never held whole.
+		try (Stream<String> lines = pm.getProductReportLines(productId, languageTag);
+				Writer out = openJson(exchange)) {
+			out.write("{\"id\":" + productId + ",\"lines\":[");
+			
+			Iterator<String> iterator = lines.iterator();
+			
+			while (iterator.hasNext()) {
+				out.write(appendString(new StringBuilder(), iterator.next()).toString());
+				
+				if (iterator.hasNext()) {
+					out.write(',');
+				}
+			}
+			out.write("]}");
+		}
+	}
+	
+	private void reviewProduct(HttpExchange exchange, int productId, Map<String, String> params) throws IOException {
+		// Form parameters override those of the query. Forms are percent encoded
+		// UTF-8, but characters sent unencoded are kept as well.
+		params.putAll(parseParams(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+		
+		if (!params.containsKey("rating")) {
+			throw new IllegalArgumentException("Missing rating");
+		}
+		
+		Rating rating = parseRating(params.get("rating"));
+		Product product = pm.reviewProduct(productId, rating, params.getOrDefault("comments", ""));
+		
+		if (product == null) {
+			sendError(exchange, 404, "Product with id " + productId + " not found");
+		} else {
+			sendJson(exchange, 200, toJson(product));
+		}
+	}
+	
+	/**
+	 * Answers 405 if the request method is not the expected one.
+	 * @return whether the request method is the expected one.
+	 */
+	private static boolean checkMethod(HttpExchange exchange, String method) throws IOException {
+		if (method.equals(exchange.getRequestMethod())) {
+			return true;
+		}
+		
+		exchange.getResponseHeaders().set("Allow", method);
+		sendError(exchange, 405, "Method " + exchange.getRequestMethod() + " not allowed");
+		return false;
+	}
+	
+	/**
+	 * Sends a whole JSON response, with its length, as small responses are
+	 * cheaper to send in one piece than in chunks.
+	 */
+	private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		
+		exchange.getResponseHeaders().set("Content-Type", JSON);
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+	}
+	
+	/**
+	 * Answers an error, unless the response was already started, whose
+	 * headers cannot be sent again: it is only logged and cut short.
+	 */
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		if (exchange.getResponseCode() != -1) {
+			logger.log(Level.WARNING, "Error after the response was started " + exchange.getRequestURI() + " " + message);
+			return;
+		}
+		
+		sendJson(exchange, status, appendString(new StringBuilder("{\"error\":"), message).append('}').toString());
+	}
+	
+	/**
+	 * Starts a JSON response of unknown length, sent in chunks as it is written.
+	 */
+	private static Writer openJson(HttpExchange exchange) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", JSON);
+		exchange.sendResponseHeaders(200, 0);
+		return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+	}
+	
+	private static String toJson(Product product) {
+		StringBuilder json = new StringBuilder();
+		
+		json.append("{\"id\":").append(product.getId())
+				.append(",\"type\":\"").append(product instanceof Food ? "food" : "drink")
+				.append("\",\"name\":");
+		appendString(json, product.getName())
+				.append(",\"price\":").append(product.getPrice().toPlainString())
+				.append(",\"discount\":").append(product.getDiscount().toPlainString())
+				.append(",\"rating\":").append(product.getRating().ordinal())
+				.append(",\"bestBefore\":\"").append(product.getBestBefore())
+				.append("\"}");
+		
+		return json.toString();
+	}
+	
+	/**
+	 * Appends a JSON string, escaping quotes, backslashes and control characters.
+	 */
+	private static StringBuilder appendString(StringBuilder json, String value) {
+		json.append('"');
+		
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			
+			switch (c) {
+			case '"':
+				json.append("\\\"");
+				break;
+			
+			case '\\':
+				json.append("\\\\");
+				break;
+			
+			case '\n':
+				json.append("\\n");
+				break;
+			
+			case '\r':
+				json.append("\\r");
+				break;
+			
+			case '\t':
+				json.append("\\t");
+				break;
+			
+			default:
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				} else {
+					json.append(c);
+				}
+			}
+		}
+		
+		return json.append('"');
+	}
+	
+	private static int parseId(String text) {
+		return Integer.parseInt(text);
+	}
+	
+	/**
+	 * Parses a number of stars, rejecting those out of range instead of
+	 * taking them as not rated, as {@link Rateable#convert} does.
+	 */
+	private static Rating parseRating(String text) {
+		int stars = Integer.parseInt(text);
+		
+		if (stars < 0 || stars >= Rating.values().length) {
+			throw new IllegalArgumentException("Invalid rating " + text + ", expected 0 to " + (Rating.values().length - 1));
+		}
+		
+		return Rateable.convert(stars);
+	}
+	
+	private static BigDecimal parseDecimal(String text) {
+		return text == null ? null : new BigDecimal(text);
+	}
+	
+	private static LocalDate parseDate(String text) {
+		return text == null ? null : LocalDate.parse(text);
+	}
+	
+	/**
+	 * Parses URL encoded {@code name=value} pairs separated by {@code &}.
+	 * @param text the pairs, or {@code null} if there are none.
+	 */
+	private static Map<String, String> parseParams(String text) {
+		Map<String, String> params = new HashMap<>();
+		
+		if (text == null || text.isEmpty()) {
+			return params;
+		}
+		
+		for (String pair : text.split("&")) {
+			int separator = pair.indexOf('=');
+			
+			if (separator < 0) {
+				params.put(URLDecoder.decode(pair, StandardCharsets.UTF_8), "");
+			} else {
+				params.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+			}
+		}
+		
+		return params;
+	}
+}
@@ -0,0 +1,77 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+/**
+ * {@code CacheStats} is an immutable snapshot of the statistics of a cache.
+ */
+public final class CacheStats {
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final int size;
+	private final int maxSize;
+	
+	/**
+	 * @param hits
+	 * @param misses
+	 * @param evictions
+	 * @param size
+	 * @param maxSize
+	 */
+	CacheStats(long hits, long misses, long evictions, int size, int maxSize) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.size = size;
+		this.maxSize = maxSize;
+	}
+	
+	public long getHits() {
+		return hits;
+	}
+	
+	public long getMisses() {
+		return misses;
+	}
+	
+	public long getEvictions() {
+		return evictions;
+	}
+	
+	public int getSize() {
+		return size;
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	/**
+	 * @return the ratio of requests that were hits, or 0 if there were no requests.
+	 */
+	public double getHitRate() {
+		long requests = hits + misses;
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+	
+	@Override
+	public String toString() {
+		return "CacheStats [hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size + ", maxSize=" + maxSize + "]";
+	}
+}
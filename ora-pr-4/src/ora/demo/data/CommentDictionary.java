@@ -0,0 +1,94 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code CommentDictionary} deduplicates review comments, so every review
+ * with the same comments, of any product, shares a single {@code String}.
+ * <br>
+ * Entries are weak: a comment is dropped from the dictionary once no review
+ * refers to it, so the dictionary never keeps comments alive by itself.
+ * The dictionary is split in segments by hash, each with its own lock.
+ */
+final class CommentDictionary {
+	private static final int SEGMENTS = 16;
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final Map<String, WeakReference<String>>[] segments = new Map[SEGMENTS];
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	
+	CommentDictionary() {
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new WeakHashMap<>();
+		}
+	}
+	
+	/**
+	 * @return the comments already in the dictionary equal to the given ones,
+	 * or the given comments, which are added to the dictionary.
+	 */
+	String intern(String comments) {
+		if (comments == null) {
+			return null;
+		}
+		
+		Map<String, WeakReference<String>> segment = segment(comments);
+		String canonical;
+		
+		synchronized (segment) {
+			WeakReference<String> entry = segment.get(comments);
+			canonical = entry == null ? null : entry.get();
+			
+			if (canonical == null) {
+				segment.put(comments, new WeakReference<>(comments));
+			}
+		}
+		
+		lookups.increment();
+		
+		if (canonical == null) {
+			return comments;
+		}
+		
+		hits.increment();
+		return canonical;
+	}
+	
+	DictionaryStats getStats() {
+		int size = 0;
+		
+		for (Map<String, WeakReference<String>> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		
+		return new DictionaryStats(lookups.sum(), hits.sum(), size);
+	}
+	
+	private Map<String, WeakReference<String>> segment(String comments) {
+		int h = comments.hashCode();
+		return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+	}
+}
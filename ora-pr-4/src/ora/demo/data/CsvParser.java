@@ -0,0 +1,247 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * {@code CsvParser} splits one line of a UTF-8 data file into comma
+ * separated fields.
+ * <br>
+ * Fields can be quoted with {@code "} to contain commas, and a quote
+ * inside a quoted field is written twice. Lines are scanned as raw bytes,
+ * which is safe as separators, quotes and line breaks are never part of a
+ * multibyte UTF-8 character. Field values are copied into a buffer reused
+ * for every line, so numbers, prices and dates are parsed straight from it
+ * and only the fields read as text are decoded into a {@code String}.
+ * <br>
+ * This class is not thread safe, each thread must use its own parser.
+ */
+final class CsvParser {
+	private static final byte SEPARATOR = ',';
+	private static final byte QUOTE = '"';
+	
+	private byte[] buffer = new byte[128];
+	private char[] chars = new char[32];
+	private int[] starts = new int[8];
+	private int[] ends = new int[8];
+	private int count;
+	
+	/**
+	 * Splits the line at the position of the data into fields. The position
+	 * is moved past the line and its line break, even if the line cannot be
+	 * parsed, so the next line can be parsed.
+	 * @param data the bytes of the file, from its current position.
+	 * @param limit maximum number of fields. If the last field is not quoted
+	 * it holds the rest of the line, commas included.
+	 * @return the number of fields.
+	 * @throws ParseException if a quoted field is not closed or is followed
+	 * by anything but a separator.
+	 */
+	int parse(ByteBuffer data, int limit) throws ParseException {
+		int from = data.position();
+		int to = from;
+		
+		while (to < data.limit() && data.get(to) != '\n') {
+			to++;
+		}
+		
+		data.position(to < data.limit() ? to + 1 : to);
+		
+		if (to > from && data.get(to - 1) == '\r') {
+			to--;
+		}
+		
+		if (buffer.length < to - from) {
+			buffer = new byte[Math.max(to - from, buffer.length * 2)];
+		}
+		
+		count = 0;
+		int i = from;
+		int b = 0;
+		
+		while (true) {
+			if (count == starts.length) {
+				starts = Arrays.copyOf(starts, count * 2);
+				ends = Arrays.copyOf(ends, count * 2);
+			}
+			
+			starts[count] = b;
+			boolean last = count == limit - 1;
+			
+			if (i < to && data.get(i) == QUOTE) {
+				i++;
+				
+				while (true) {
+					if (i == to) {
+						throw new ParseException("Unterminated quoted field", i - from);
+					}
+					
+					byte c = data.get(i++);
+					
+					if (c == QUOTE) {
+						if (i < to && data.get(i) == QUOTE) {
+							buffer[b++] = QUOTE;
+							i++;
+						} else {
+							break;
+						}
+					} else {
+						buffer[b++] = c;
+					}
+				}
+				
+				if (i < to && (last || data.get(i) != SEPARATOR)) {
+					throw new ParseException("Unexpected character after quoted field", i - from);
+				}
+			} else {
+				while (i < to && (last || data.get(i) != SEPARATOR)) {
+					buffer[b++] = data.get(i++);
+				}
+			}
+			
+			ends[count++] = b;
+			
+			if (i == to || last) {
+				return count;
+			}
+			i++; // Skip the separator.
+		}
+	}
+	
+	int getFieldCount() {
+		return count;
+	}
+	
+	String getString(int field) {
+		return new String(buffer, start(field), ends[field] - starts[field], StandardCharsets.UTF_8);
+	}
+	
+	boolean isEmpty(int field) {
+		return ends[field] == start(field);
+	}
+	
+	/**
+	 * @throws NumberFormatException if the field is not a decimal integer.
+	 */
+	int getInt(int field) {
+		int i = start(field);
+		int end = ends[field];
+		boolean negative = i < end && buffer[i] == '-';
+		
+		if (negative) {
+			i++;
+		}
+		
+		if (i == end || end - i > 10) {
+			throw new NumberFormatException("Invalid integer field " + field);
+		}
+		
+		long value = 0;
+		
+		for (; i < end; i++) {
+			int digit = buffer[i] - '0';
+			
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("Invalid integer field " + field);
+			}
+			value = value * 10 + digit;
+		}
+		
+		value = negative ? -value : value;
+		
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Integer field " + field + " out of range");
+		}
+		
+		return (int) value;
+	}
+	
+	/**
+	 * @return the exact decimal value of the field, without going through {@code double}.
+	 * @throws NumberFormatException if the field is not a decimal number.
+	 */
+	BigDecimal getDecimal(int field) {
+		return new BigDecimal(chars, 0, toChars(field));
+	}
+	
+	/**
+	 * @return the ISO-8601 date of the field.
+	 * @throws java.time.format.DateTimeParseException if the field is not a date.
+	 */
+	LocalDate getDate(int field) {
+		return LocalDate.parse(CharBuffer.wrap(chars, 0, toChars(field)));
+	}
+	
+	/**
+	 * Copies a field made of ASCII characters to the character buffer, as
+	 * numbers and dates are parsed from characters. Any other byte becomes
+	 * an invalid character, so parsing it fails.
+	 * @return the length of the field.
+	 */
+	private int toChars(int field) {
+		int start = start(field);
+		int length = ends[field] - start;
+		
+		if (chars.length < length) {
+			chars = new char[Math.max(length, chars.length * 2)];
+		}
+		
+		for (int i = 0; i < length; i++) {
+			byte c = buffer[start + i];
+			chars[i] = c >= 0 ? (char) c : '\uFFFD';
+		}
+		
+		return length;
+	}
+	
+	private int start(int field) {
+		if (field >= count) {
+			throw new IndexOutOfBoundsException("Missing field " + field);
+		}
+		
+		return starts[field];
+	}
+	
+	/**
+	 * Quotes a value if it contains a separator or a quote, so it can be
+	 * written as a single field. Line breaks are written as spaces, as every
+	 * line is parsed as one record.
+	 */
+	static String quote(String value) {
+		if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+			value = value.replace("\r\n", " ").replace('\r', ' ').replace('\n', ' ');
+		}
+		
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			
+			if (c == SEPARATOR || c == QUOTE) {
+				return '"' + value.replace("\"", "\"\"") + '"';
+			}
+		}
+		
+		return value;
+	}
+}
@@ -0,0 +1,79 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@code DataFileReader} reads whole data files as bytes, so they are
+ * parsed by a {@link CsvParser} without decoding every line into a
+ * {@code String}.
+ * <br>
+ * Files up to a size threshold are read into a direct buffer reused for
+ * every file, larger files are memory mapped.
+ * <br>
+ * This class is not thread safe, each thread must use its own reader.
+ */
+final class DataFileReader {
+	private final int mapThreshold;
+	private ByteBuffer buffer;
+	
+	/**
+	 * @param mapThreshold size in bytes above which files are memory mapped.
+	 */
+	DataFileReader(int mapThreshold) {
+		this.mapThreshold = mapThreshold;
+		this.buffer = ByteBuffer.allocateDirect(Math.min(mapThreshold, 8192));
+	}
+	
+	/**
+	 * @return the bytes of the file, from position 0. A file that is not
+	 * mapped is read into the reused buffer, so the bytes are only valid
+	 * until the next call.
+	 * @throws IOException if the file cannot be read or is larger than 2GB.
+	 */
+	ByteBuffer read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File too large " + file);
+			}
+			
+			if (size > mapThreshold) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			
+			if (buffer.capacity() < size) {
+				buffer = ByteBuffer.allocateDirect(Math.max((int) size, buffer.capacity() * 2));
+			}
+			
+			buffer.clear();
+			
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// Read until the buffer is full or the end of the file.
+			}
+			
+			return buffer.flip();
+		}
+	}
+}
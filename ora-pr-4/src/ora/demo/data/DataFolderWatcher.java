@@ -0,0 +1,203 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * {@code DataFolderWatcher} watches the data folder for product and review
+ * files that are created, modified or deleted, and hands the ids of the
+ * changed products to a listener in batches, from its own thread.
+ * <br>
+ * Events are debounced: a batch is handed over once no event has arrived
+ * for the debounce time, or once it holds the maximum number of products,
+ * so a bulk copy of many files is applied in a few batches rather than
+ * file by file. If the file system drops events, every file of the folder
+ * is handed over.
+ */
+final class DataFolderWatcher implements Closeable {
+	
+	interface Listener {
+		/**
+		 * @param products ids of the products whose product file changed.
+		 * @param reviews ids of the products whose reviews file changed.
+		 */
+		void changed(Set<Integer> products, Set<Integer> reviews);
+	}
+	
+	private static final Logger logger = Logger.getLogger(DataFolderWatcher.class.getName());
+	
+	private final Path folder;
+	private final MessageFormat productFile;
+	private final MessageFormat reviewsFile;
+	private final long debounceMillis;
+	private final int batchSize;
+	private final Listener listener;
+	private final WatchService watchService;
+	private final Thread thread;
+	
+	private Set<Integer> products = new HashSet<>();
+	private Set<Integer> reviews = new HashSet<>();
+	
+	/**
+	 * Starts watching the folder.
+	 * @param productFile pattern of the product file names, such as {@code product{0}.csv}.
+	 * @param reviewsFile pattern of the reviews file names.
+	 * @throws IOException if the folder cannot be watched.
+	 */
+	DataFolderWatcher(Path folder, String productFile, String reviewsFile, long debounceMillis, int batchSize, Listener listener) throws IOException {
+		this.folder = folder;
+		this.productFile = new MessageFormat(productFile);
+		this.reviewsFile = new MessageFormat(reviewsFile);
+		this.debounceMillis = debounceMillis;
+		this.batchSize = batchSize;
+		this.listener = listener;
+		this.watchService = folder.getFileSystem().newWatchService();
+		
+		folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+		
+		thread = new Thread(this::watch, "data-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+	
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = isPending()
+						? watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)
+						: watchService.take();
+				
+				if (key == null) {
+					// Nothing changed during the debounce time.
+					deliver();
+					continue;
+				}
+				
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == OVERFLOW) {
+						logger.log(Level.WARNING, "Data folder events lost, reloading every file");
+						addAll();
+					} else {
+						add(((Path) event.context()).getFileName().toString());
+					}
+				}
+				
+				if (!key.reset()) {
+					logger.log(Level.SEVERE, "Data folder no longer watched " + folder);
+					deliver();
+					return;
+				}
+				
+				if (products.size() + reviews.size() >= batchSize) {
+					deliver();
+				}
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			// Closed, pending changes are discarded.
+		}
+	}
+	
+	private boolean isPending() {
+		return !products.isEmpty() || !reviews.isEmpty();
+	}
+	
+	private void add(String name) {
+		int id = parseId(productFile, name);
+		
+		if (id >= 0) {
+			products.add(id);
+		} else if ((id = parseId(reviewsFile, name)) >= 0) {
+			reviews.add(id);
+		}
+	}
+	
+	private void addAll() {
+		try (Stream<Path> files = Files.list(folder)) {
+			files.forEach(file -> add(file.getFileName().toString()));
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Error listing data folder " + e.getMessage());
+		}
+	}
+	
+	private void deliver() {
+		if (isPending()) {
+			Set<Integer> changedProducts = products;
+			Set<Integer> changedReviews = reviews;
+			
+			products = new HashSet<>();
+			reviews = new HashSet<>();
+			
+			try {
+				listener.changed(changedProducts, changedReviews);
+			} catch (RuntimeException e) {
+				logger.log(Level.SEVERE, "Error applying data folder changes " + e.getMessage(), e);
+			}
+		}
+	}
+	
+	/**
+	 * @return the product id of a file name made with the pattern, or -1
+	 * if the name does not match it. Ids formatted with grouping separators
+	 * are accepted, as {@code MessageFormat} writes them.
+	 */
+	private static int parseId(MessageFormat format, String name) {
+		ParsePosition position = new ParsePosition(0);
+		Object[] values = format.parse(name, position);
+		
+		if (values == null || values.length == 0 || values[0] == null || position.getIndex() != name.length()) {
+			return -1;
+		}
+		
+		String text = values[0].toString();
+		ParsePosition numberPosition = new ParsePosition(0);
+		Number id = NumberFormat.getIntegerInstance().parse(text, numberPosition);
+		
+		if (id == null || numberPosition.getIndex() != text.length() || id.longValue() < 0 || id.longValue() > Integer.MAX_VALUE) {
+			return -1;
+		}
+		
+		return id.intValue();
+	}
+}
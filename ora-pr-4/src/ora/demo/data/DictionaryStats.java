@@ -0,0 +1,74 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+/**
+ * {@code DictionaryStats} is an immutable snapshot of the statistics of
+ * the review comment dictionary.
+ */
+public final class DictionaryStats {
+	private final long lookups;
+	private final long hits;
+	private final int size;
+	
+	/**
+	 * @param lookups
+	 * @param hits
+	 * @param size
+	 */
+	DictionaryStats(long lookups, long hits, int size) {
+		this.lookups = lookups;
+		this.hits = hits;
+		this.size = size;
+	}
+	
+	/**
+	 * @return the number of comments stored through the dictionary.
+	 */
+	public long getLookups() {
+		return lookups;
+	}
+	
+	/**
+	 * @return the number of comments that shared a string already in the dictionary.
+	 */
+	public long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * @return the number of distinct comments still referred to by reviews.
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	/**
+	 * @return the average number of comments stored per string allocated,
+	 * or 0 if there were no lookups.
+	 */
+	public double getDedupRatio() {
+		long misses = lookups - hits;
+		return misses == 0 ? 0 : (double) lookups / misses;
+	}
+	
+	@Override
+	public String toString() {
+		return "DictionaryStats [lookups=" + lookups + ", hits=" + hits + ", size=" + size + ", dedupRatio=" + getDedupRatio() + "]";
+	}
+}
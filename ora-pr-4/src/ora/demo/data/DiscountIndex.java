@@ -0,0 +1,136 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@code DiscountIndex} keeps the discount totals of the products of each
+ * rating up to date as products are added and replaced, so they are read
+ * without visiting the catalog.
+ * <br>
+ * Totals are kept in buckets by discount condition: products always
+ * discounted, drinks, discounted during the drink discount time, and food,
+ * by best before date, discounted on that day. The totals in effect are
+ * combined from the buckets and kept until the day, the drink discount
+ * time or the products change.
+ * <br>
+ * Sums are kept in minor units of the currency, see {@link Money}, so
+ * subtracting replaced products is exact and updates do not allocate.
+ */
+final class DiscountIndex {
+	private static final Rating[] RATINGS = Rating.values();
+	
+	private final int[] counts = new int[RATINGS.length];
+	private final long[] always = new long[RATINGS.length];
+	private final long[] drinks = new long[RATINGS.length];
+	private final Map<LocalDate, FoodBucket> food = new HashMap<>();
+	
+	private Map<Rating, Long> totals;
+	private LocalDate totalsDate;
+	private boolean totalsDrinkTime;
+	
+	synchronized void add(Product product) {
+		update(product, 1);
+	}
+	
+	synchronized void replace(Product oldProduct, Product newProduct) {
+		update(oldProduct, -1);
+		update(newProduct, 1);
+	}
+	
+	synchronized void remove(Product product) {
+		update(product, -1);
+	}
+	
+	synchronized void clear() {
+		Arrays.fill(counts, 0);
+		Arrays.fill(always, 0);
+		Arrays.fill(drinks, 0);
+		food.clear();
+		totals = null;
+	}
+	
+	/**
+	 * @return the discount totals, at the given date and time, of each rating
+	 * that has products, in minor units of the currency.
+	 */
+	synchronized Map<Rating, Long> getTotals(LocalDate date, LocalTime time) {
+		boolean drinkTime = Drink.isDiscountTime(time);
+		
+		if (totals == null || !date.equals(totalsDate) || drinkTime != totalsDrinkTime) {
+			FoodBucket dated = food.get(date);
+			Map<Rating, Long> current = new EnumMap<>(Rating.class);
+			
+			for (int i = 0; i < RATINGS.length; i++) {
+				if (counts[i] > 0) {
+					long total = always[i];
+					
+					if (drinkTime) {
+						total += drinks[i];
+					}
+					if (dated != null) {
+						total += dated.totals[i];
+					}
+					current.put(RATINGS[i], total);
+				}
+			}
+			
+			totals = Collections.unmodifiableMap(current);
+			totalsDate = date;
+			totalsDrinkTime = drinkTime;
+		}
+		
+		return totals;
+	}
+	
+	private void update(Product product, int sign) {
+		int rating = product.getRating().ordinal();
+		long discount = sign * product.getRateDiscountUnits();
+		
+		counts[rating] += sign;
+		
+		if (product instanceof Food) {
+			LocalDate bestBefore = product.getBestBefore();
+			FoodBucket bucket = food.computeIfAbsent(bestBefore, d -> new FoodBucket());
+			
+			bucket.totals[rating] += discount;
+			
+			if ((bucket.count += sign) == 0) {
+				food.remove(bestBefore);
+			}
+		} else if (product instanceof Drink) {
+			drinks[rating] += discount;
+		} else {
+			always[rating] += discount;
+		}
+		
+		totals = null;
+	}
+	
+	private static class FoodBucket {
+		private final long[] totals = new long[RATINGS.length];
+		private int count;
+	}
+}
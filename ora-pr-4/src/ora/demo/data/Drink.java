@@ -17,7 +17,6 @@
 
 package ora.demo.data;
 
-import java.math.BigDecimal;
 import java.time.LocalTime;
 
 public final class Drink extends Product {
@@ -27,18 +26,24 @@ public final class Drink extends Product {
 	 * @param price
 	 * @param rating
 	 */
-	Drink(int id, String name, BigDecimal price, Rating rating) {
+	Drink(int id, String name, long price, Rating rating) {
 		super(id, name, price, rating);
 	}
 
 	@Override
-	public BigDecimal getDiscount() {
-		LocalTime now = LocalTime.now();
-		return now.isAfter(LocalTime.of(17, 30)) && now.isBefore(LocalTime.of(18, 30)) ? super.getDiscount() : BigDecimal.ZERO; 
+	long getDiscountUnits() {
+		return isDiscountTime(LocalTime.now()) ? super.getDiscountUnits() : 0;
+	}
+	
+	/**
+	 * @return whether drinks are discounted at the given time of the day.
+	 */
+	static boolean isDiscountTime(LocalTime time) {
+		return time.isAfter(LocalTime.of(17, 30)) && time.isBefore(LocalTime.of(18, 30));
 	}
 	
 	@Override
 	public Product applyRating(Rating newRating) {
-		return new Drink(getId(), getName(), getPrice(), newRating);
+		return new Drink(getId(), getName(), getPriceUnits(), newRating);
 	}
 }
@@ -0,0 +1,100 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@code FilePrefix} identifies the bytes of a file read so far by their
+ * length and checksum, so a later version of the file can be proven to
+ * only have more bytes appended to it.
+ * <br>
+ * The checksum is the 64 bit FNV-1a hash which, unlike
+ * {@link java.util.zip.CRC32}, can be carried on from a previous value, so
+ * bytes appended by the catalog extend the prefix without reading the file
+ * again.
+ */
+final class FilePrefix {
+	/** The prefix of an empty or missing file. */
+	static final FilePrefix EMPTY = new FilePrefix(0, 0xCBF29CE484222325L);
+	
+	private static final long PRIME = 0x100000001B3L;
+	
+	private final long length;
+	private final long checksum;
+	
+	private FilePrefix(long length, long checksum) {
+		this.length = length;
+		this.checksum = checksum;
+	}
+	
+	/**
+	 * @return the prefix of the first bytes of the data, regardless of its position.
+	 */
+	static FilePrefix of(ByteBuffer data, int length) {
+		return EMPTY.extend(data, length);
+	}
+	
+	long getLength() {
+		return length;
+	}
+	
+	/**
+	 * @param data the whole file, starting with this prefix.
+	 * @return the prefix extended up to the given length of the data.
+	 */
+	FilePrefix extend(ByteBuffer data, int length) {
+		long hash = checksum;
+		
+		for (int i = (int) this.length; i < length; i++) {
+			hash = (hash ^ (data.get(i) & 0xFF)) * PRIME;
+		}
+		
+		return new FilePrefix(Math.max(this.length, length), hash);
+	}
+	
+	/**
+	 * @return the prefix extended with bytes appended to the file.
+	 */
+	FilePrefix append(byte[] bytes) {
+		long hash = checksum;
+		
+		for (byte b : bytes) {
+			hash = (hash ^ (b & 0xFF)) * PRIME;
+		}
+		
+		return new FilePrefix(length + bytes.length, hash);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Long.hashCode(checksum);
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof FilePrefix)) {
+			return false;
+		}
+		FilePrefix other = (FilePrefix) obj;
+		return length == other.length && checksum == other.checksum;
+	}
+}
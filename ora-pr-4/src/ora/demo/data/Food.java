@@ -17,7 +17,6 @@
 
 package ora.demo.data;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
 public final class Food  extends Product {
@@ -30,7 +29,7 @@ public final class Food  extends Product {
 	 * @param rating
 	 * @param bestBefore
 	 */
-	Food(int id, String name, BigDecimal price, Rating rating, LocalDate bestBefore) {
+	Food(int id, String name, long price, Rating rating, LocalDate bestBefore) {
 		super(id, name, price, rating);
 		this.bestBefore = bestBefore;
 	}
@@ -50,12 +49,12 @@ public final class Food  extends Product {
 	}
 	
 	@Override
-	public BigDecimal getDiscount() {
-		return (bestBefore.isEqual(LocalDate.now()) ? super.getDiscount() : BigDecimal.ZERO);
+	long getDiscountUnits() {
+		return (bestBefore.isEqual(LocalDate.now()) ? super.getDiscountUnits() : 0);
 	}
 	
 	@Override
 	public Product applyRating(Rating newRating) {
-		return new Food(getId(), getName(), getPrice(), newRating, bestBefore);
+		return new Food(getId(), getName(), getPriceUnits(), newRating, bestBefore);
 	}
 }
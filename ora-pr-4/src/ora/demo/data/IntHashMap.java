@@ -0,0 +1,214 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * {@code IntHashMap} is an open addressing hash map with primitive
+ * {@code int} keys, so lookups neither box the key nor allocate.
+ * <br>
+ * Collisions are resolved by linear probing and removals use backward
+ * shift deletion, so no tombstones are left behind. A slot is empty when
+ * its value is {@code null}, therefore {@code null} values are not allowed.
+ * <br>
+ * This class is not thread safe.
+ * @param <V> the type of the mapped values.
+ */
+final class IntHashMap<V> {
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.5f;
+	
+	private int[] keys;
+	private Object[] values;
+	private int size;
+	private int mask;
+	private int threshold;
+	
+	IntHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * @param expectedSize number of mappings the map should hold without resizing.
+	 */
+	IntHashMap(int expectedSize) {
+		allocate(tableSizeFor((int) Math.min(1 << 30, Math.max(DEFAULT_CAPACITY, expectedSize / LOAD_FACTOR))));
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	boolean isEmpty() {
+		return size == 0;
+	}
+	
+	@SuppressWarnings("unchecked")
+	V get(int key) {
+		int i = indexOf(key);
+		return i < 0 ? null : (V) values[i];
+	}
+	
+	boolean containsKey(int key) {
+		return indexOf(key) >= 0;
+	}
+	
+	/**
+	 * @return the previous value mapped to the key, or {@code null} if there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	V put(int key, V value) {
+		if (value == null) {
+			throw new NullPointerException("Null values are not allowed");
+		}
+		
+		int i = slot(key);
+		
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				V previous = (V) values[i];
+				values[i] = value;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+		
+		keys[i] = key;
+		values[i] = value;
+		
+		if (++size > threshold) {
+			rehash(keys.length << 1);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @return the current value mapped to the key; the given value is only
+	 * stored if there was none.
+	 */
+	V putIfAbsent(int key, V value) {
+		V current = get(key);
+		
+		if (current == null) {
+			put(key, value);
+			return null;
+		}
+		
+		return current;
+	}
+	
+	/**
+	 * @return the removed value, or {@code null} if the key was not mapped.
+	 */
+	@SuppressWarnings("unchecked")
+	V remove(int key) {
+		int i = indexOf(key);
+		
+		if (i < 0) {
+			return null;
+		}
+		
+		V previous = (V) values[i];
+		values[i] = null;
+		size--;
+		
+		// Backward shift: move up any entry of the probe chain that can no
+		// longer be reached through the emptied slot.
+		int hole = i;
+		int j = (i + 1) & mask;
+		
+		while (values[j] != null) {
+			int home = slot(keys[j]);
+			
+			if (((j - home) & mask) >= ((j - hole) & mask)) {
+				keys[hole] = keys[j];
+				values[hole] = values[j];
+				values[j] = null;
+				hole = j;
+			}
+			j = (j + 1) & mask;
+		}
+		
+		return previous;
+	}
+	
+	void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+	
+	@SuppressWarnings("unchecked")
+	void forEachValue(Consumer<? super V> action) {
+		for (Object value : values) {
+			if (value != null) {
+				action.accept((V) value);
+			}
+		}
+	}
+	
+	private int indexOf(int key) {
+		int i = slot(key);
+		
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		
+		return -1;
+	}
+	
+	private int slot(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+	
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+	
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		
+		allocate(capacity);
+		
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int j = slot(oldKeys[i]);
+				
+				while (values[j] != null) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+	
+	private static int tableSizeFor(int n) {
+		return Integer.highestOneBit(Math.max(1, n - 1)) << 1;
+	}
+}
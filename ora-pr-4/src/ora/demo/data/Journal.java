@@ -0,0 +1,417 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * {@code Journal} is an append only log of the changes made to the catalog
+ * since the last snapshot, so they survive a crash.
+ * <br>
+ * The journal is split into numbered segments. A new segment is started
+ * whenever the journal is opened and on every {@link #rotate() rotation},
+ * so segments included in a snapshot can be deleted as a whole.
+ * <br>
+ * Each record is written as its length, the CRC32 checksum of its content
+ * and its content. Replay stops at the first incomplete or corrupted
+ * record of a segment, which can only be the last one written before a
+ * crash.
+ * <br>
+ * With the {@link SyncPolicy#ALWAYS ALWAYS} policy records are durable once
+ * {@link #sync(long)} returns. Threads waiting for a sync while another one
+ * is forcing the file to disk are covered by the next force, so concurrent
+ * writers share one disk sync instead of paying for one each.
+ * <br>
+ * Locks are {@link ReentrantLock}s rather than monitors, so virtual threads
+ * waiting for a write or a disk sync do not pin their carrier thread.
+ */
+final class Journal implements Closeable {
+	
+	enum SyncPolicy {
+		/** {@link Journal#sync(long)} waits until the record is on disk. */
+		ALWAYS,
+		/** The journal is forced to disk periodically, writers do not wait. */
+		INTERVAL,
+		/** The operating system decides when to write the journal to disk. */
+		NEVER
+	}
+	
+	/**
+	 * Receives the records of the journal when it is replayed.
+	 */
+	interface Handler {
+		void product(Product product);
+		
+		/**
+		 * @param productRating the rating of the product after the review.
+		 */
+		void review(int productId, Review review, Rating productRating);
+	}
+	
+	private static final byte PRODUCT = 1;
+	private static final byte REVIEW = 2;
+	private static final byte DRINK = 'D';
+	private static final byte FOOD = 'F';
+	
+	private static final Logger logger = Logger.getLogger(Journal.class.getName());
+	
+	private final Path folder;
+	private final String fileName;
+	private final SyncPolicy policy;
+	private final ScheduledExecutorService syncer;
+	
+	// Lock order: syncLock, then lock.
+	private final ReentrantLock syncLock = new ReentrantLock();
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	private FileChannel channel;
+	private long segment;
+	private long size;
+	private long written;
+	private volatile long synced;
+	
+	/**
+	 * Opens a new segment after the existing ones.
+	 * @param folder the folder of the journal segments.
+	 * @param fileName {@link java.text.MessageFormat MessageFormat} pattern of
+	 * the segment file names, with the segment number as argument.
+	 * @param policy when records are forced to disk.
+	 * @param intervalMillis period of the {@link SyncPolicy#INTERVAL INTERVAL} policy.
+	 */
+	Journal(Path folder, String fileName, SyncPolicy policy, long intervalMillis) throws IOException {
+		this.folder = folder;
+		this.fileName = fileName;
+		this.policy = policy;
+		
+		Files.createDirectories(folder);
+		Map.Entry<Long, Path> last = NumberedFiles.list(folder, fileName).lastEntry();
+		segment = last == null ? 1 : last.getKey() + 1;
+		channel = open(segment);
+		
+		if (policy == SyncPolicy.INTERVAL) {
+			syncer = Executors.newSingleThreadScheduledExecutor(task -> {
+				Thread thread = new Thread(task, "journal-sync");
+				thread.setDaemon(true);
+				return thread;
+			});
+			syncer.scheduleWithFixedDelay(() -> {
+				try {
+					force(lastSequence());
+				} catch (IOException e) {
+					logger.log(Level.SEVERE, "Error syncing journal " + e.getMessage());
+				}
+			}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		} else {
+			syncer = null;
+		}
+	}
+	
+	/**
+	 * @return the sequence number of the record, to be passed to {@link #sync(long)}.
+	 */
+	long logProduct(Product product) throws IOException {
+		byte[] name = product.getName().getBytes(StandardCharsets.UTF_8);
+		byte[] unscaled = product.getPrice().unscaledValue().toByteArray();
+		ByteBuffer record = allocate(1 + 1 + 4 + 4 + name.length + 4 + 4 + unscaled.length + 1 + 8);
+		
+		record.put(PRODUCT)
+			.put(product instanceof Food ? FOOD : DRINK)
+			.putInt(product.getId())
+			.putInt(name.length).put(name)
+			.putInt(product.getPrice().scale())
+			.putInt(unscaled.length).put(unscaled)
+			.put((byte) product.getRating().ordinal())
+			.putLong(product instanceof Food ? product.getBestBefore().toEpochDay() : 0);
+		
+		return append(record);
+	}
+	
+	/**
+	 * @param productRating the rating of the product after the review.
+	 * @return the sequence number of the record, to be passed to {@link #sync(long)}.
+	 */
+	long logReview(int productId, Review review, Rating productRating) throws IOException {
+		byte[] comments = review.getComments().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = allocate(1 + 4 + 1 + 4 + comments.length + 1);
+		
+		record.put(REVIEW)
+			.putInt(productId)
+			.put((byte) review.getRating().ordinal())
+			.putInt(comments.length).put(comments)
+			.put((byte) productRating.ordinal());
+		
+		return append(record);
+	}
+	
+	/**
+	 * Waits until the record with the given sequence number is on disk, if
+	 * the policy is {@link SyncPolicy#ALWAYS ALWAYS}.
+	 */
+	void sync(long sequence) throws IOException {
+		if (policy == SyncPolicy.ALWAYS && synced < sequence) {
+			force(sequence);
+		}
+	}
+	
+	/**
+	 * @return the size in bytes of the current segment.
+	 */
+	long size() {
+		try {
+			lock.lock();
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Closes the current segment and starts a new one. No record may be
+	 * appended concurrently if the caller relies on the returned segment
+	 * holding every record appended so far.
+	 * @return the number of the closed segment.
+	 */
+	long rotate() throws IOException {
+		try {
+			syncLock.lock();
+			lock.lock();
+			channel.force(false);
+			channel.close();
+			synced = written;
+			
+			long closed = segment++;
+			channel = open(segment);
+			size = 0;
+			return closed;
+		} finally {
+			lock.unlock();
+			syncLock.unlock();
+		}
+	}
+	
+	/**
+	 * Deletes the segments up to the given one, once their records are
+	 * included in a snapshot.
+	 */
+	void deleteUpTo(long lastSegment) throws IOException {
+		for (Path file : NumberedFiles.list(folder, fileName).headMap(lastSegment, true).values()) {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	/**
+	 * Replays the records of the segments written before this journal was
+	 * opened, skipping those up to the given segment.
+	 * @return the number of records replayed.
+	 */
+	long replay(long afterSegment, Handler handler) throws IOException {
+		long records = 0;
+		long current;
+		
+		try {
+			lock.lock();
+			current = segment;
+		} finally {
+			lock.unlock();
+		}
+		
+		for (Map.Entry<Long, Path> file : NumberedFiles.list(folder, fileName).subMap(afterSegment, false, current, false).entrySet()) {
+			records += replay(file.getValue(), handler);
+		}
+		
+		return records;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (syncer != null) {
+			syncer.shutdown();
+		}
+		
+		try {
+			syncLock.lock();
+			lock.lock();
+			channel.force(false);
+			channel.close();
+			synced = written;
+		} finally {
+			lock.unlock();
+			syncLock.unlock();
+		}
+	}
+	
+	private long replay(Path file, Handler handler) throws IOException {
+		long records = 0;
+		Rating[] ratings = Rating.values();
+		
+		try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+			CRC32 crc = new CRC32();
+			
+			while (buffer.remaining() >= 8) {
+				int length = buffer.getInt();
+				int checksum = buffer.getInt();
+				
+				if (length <= 0 || length > buffer.remaining()) {
+					logger.log(Level.WARNING, "Incomplete journal record in " + file.getFileName() + " at " + (buffer.position() - 8));
+					break;
+				}
+				
+				ByteBuffer record = buffer.slice().limit(length);
+				buffer.position(buffer.position() + length);
+				
+				crc.reset();
+				crc.update(record.duplicate());
+				if ((int) crc.getValue() != checksum) {
+					logger.log(Level.WARNING, "Corrupted journal record in " + file.getFileName() + " at " + (buffer.position() - length - 8));
+					break;
+				}
+				
+				switch (record.get()) {
+				case PRODUCT:
+					byte type = record.get();
+					int id = record.getInt();
+					String name = getString(record);
+					int scale = record.getInt();
+					byte[] unscaled = new byte[record.getInt()];
+					record.get(unscaled);
+					BigDecimal price = new BigDecimal(new BigInteger(unscaled), scale);
+					Rating rating = ratings[record.get()];
+					long bestBefore = record.getLong();
+					
+					handler.product(type == FOOD
+							? new Food(id, name, Money.valueOf(price), rating, LocalDate.ofEpochDay(bestBefore))
+							: new Drink(id, name, Money.valueOf(price), rating));
+					break;
+					
+				case REVIEW:
+					int productId = record.getInt();
+					Rating reviewRating = ratings[record.get()];
+					String comments = getString(record);
+					
+					handler.review(productId, new Review(reviewRating, comments), ratings[record.get()]);
+					break;
+					
+				default:
+					throw new IOException("Unknown journal record in " + file.getFileName());
+				}
+				records++;
+			}
+		}
+		
+		return records;
+	}
+	
+	private static String getString(ByteBuffer record) {
+		int length = record.getInt();
+		String value = StandardCharsets.UTF_8.decode(record.slice().limit(length)).toString();
+		record.position(record.position() + length);
+		return value;
+	}
+	
+	/**
+	 * @return a buffer for a record of the given length, with room for its header.
+	 */
+	private static ByteBuffer allocate(int length) {
+		ByteBuffer record = ByteBuffer.allocate(8 + length);
+		record.position(8);
+		return record;
+	}
+	
+	private long append(ByteBuffer record) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 8, record.position() - 8);
+		record.putInt(0, record.position() - 8).putInt(4, (int) crc.getValue()).flip();
+		
+		try {
+			lock.lock();
+			
+			while (record.hasRemaining()) {
+				size += channel.write(record);
+			}
+			
+			return ++written;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private long lastSequence() {
+		try {
+			lock.lock();
+			return written;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Forces every record written so far to disk, unless the record with the
+	 * given sequence number already is. Threads that were waiting while
+	 * another one was forcing the file usually find their records synced.
+	 */
+	private void force(long sequence) throws IOException {
+		try {
+			syncLock.lock();
+			
+			if (synced >= sequence) {
+				return;
+			}
+			
+			FileChannel current;
+			long last;
+			
+			try {
+				lock.lock();
+				current = channel;
+				last = written;
+			} finally {
+				lock.unlock();
+			}
+			
+			current.force(false);
+			synced = last;
+		} finally {
+			syncLock.unlock();
+		}
+	}
+	
+	private FileChannel open(long number) throws IOException {
+		return FileChannel.open(NumberedFiles.resolve(folder, fileName, number),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+}
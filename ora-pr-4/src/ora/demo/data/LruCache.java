@@ -0,0 +1,90 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code LruCache} holds up to a maximum number of entries, evicting the
+ * least recently used ones when it is full.
+ * <br>
+ * The cache is split in segments by hash, each with its own lock and an
+ * equal share of the entries, so threads using different keys rarely wait
+ * for each other. Values are computed by the callers, outside the locks.
+ */
+final class LruCache<K, V> {
+	private static final int SEGMENTS = 16;
+	
+	private final Map<K, V>[] segments;
+	
+	/**
+	 * @param maxSize maximum number of entries.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	LruCache(int maxSize) {
+		int segmentSize = Math.max(1, maxSize / SEGMENTS);
+		segments = new Map[SEGMENTS];
+		
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new LinkedHashMap<>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+					return size() > segmentSize;
+				}
+			};
+		}
+	}
+	
+	/**
+	 * @return the value of a key, or {@code null} if it is not cached.
+	 */
+	V get(K key) {
+		Map<K, V> segment = segment(key);
+		
+		synchronized (segment) {
+			return segment.get(key);
+		}
+	}
+	
+	void put(K key, V value) {
+		Map<K, V> segment = segment(key);
+		
+		synchronized (segment) {
+			segment.put(key, value);
+		}
+	}
+	
+	void remove(K key) {
+		Map<K, V> segment = segment(key);
+		
+		synchronized (segment) {
+			segment.remove(key);
+		}
+	}
+	
+	/**
+	 * Picks the segment by the high bits of the mixed hash, as the map of a
+	 * segment picks its buckets by the low bits of the key hash.
+	 */
+	private Map<K, V> segment(K key) {
+		return segments[(key.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENTS))];
+	}
+}
@@ -0,0 +1,112 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code Metrics} counts the operations of a product manager and the time
+ * they take, along with stripe lock and parse error counters.
+ * <br>
+ * Counters are striped adders, so recording neither locks nor allocates
+ * and instrumentation can stay enabled.
+ */
+final class Metrics {
+	
+	enum Operation {
+		FIND, REVIEW, REVIEW_BATCH, REPORT, DISCOUNTS, LOAD, RELOAD, DUMP, RESTORE
+	}
+	
+	private static final Operation[] OPERATIONS = Operation.values();
+	
+	private final LongAdder[] counts = new LongAdder[OPERATIONS.length];
+	private final LongAdder[] nanos = new LongAdder[OPERATIONS.length];
+	private final LongAccumulator[] maxNanos = new LongAccumulator[OPERATIONS.length];
+	private final LongAdder lockCount = new LongAdder();
+	private final LongAdder lockWaitNanos = new LongAdder();
+	private final LongAdder lockHoldNanos = new LongAdder();
+	private final LongAdder parseErrors = new LongAdder();
+	
+	Metrics() {
+		for (int i = 0; i < OPERATIONS.length; i++) {
+			counts[i] = new LongAdder();
+			nanos[i] = new LongAdder();
+			maxNanos[i] = new LongAccumulator(Math::max, 0);
+		}
+	}
+	
+	/**
+	 * @param start the {@link System#nanoTime()} when the operation started.
+	 */
+	void record(Operation operation, long start) {
+		long elapsed = System.nanoTime() - start;
+		int i = operation.ordinal();
+		
+		counts[i].increment();
+		nanos[i].add(elapsed);
+		maxNanos[i].accumulate(elapsed);
+	}
+	
+	void lockAcquired(long waitNanos) {
+		lockCount.increment();
+		lockWaitNanos.add(waitNanos);
+	}
+	
+	void lockReleased(long holdNanos) {
+		lockHoldNanos.add(holdNanos);
+	}
+	
+	void parseError() {
+		parseErrors.increment();
+	}
+	
+	/**
+	 * @return the statistics of each operation by lower case name.
+	 */
+	Map<String, OperationStats> getOperations() {
+		Map<String, OperationStats> operations = new LinkedHashMap<>();
+		
+		for (Operation operation : OPERATIONS) {
+			int i = operation.ordinal();
+			operations.put(operation.name().toLowerCase(),
+					new OperationStats(counts[i].sum(), nanos[i].sum(), maxNanos[i].get()));
+		}
+		
+		return Collections.unmodifiableMap(operations);
+	}
+	
+	long getLockCount() {
+		return lockCount.sum();
+	}
+	
+	long getLockWaitNanos() {
+		return lockWaitNanos.sum();
+	}
+	
+	long getLockHoldNanos() {
+		return lockHoldNanos.sum();
+	}
+	
+	long getParseErrors() {
+		return parseErrors.sum();
+	}
+}
@@ -0,0 +1,96 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.Map;
+
+/**
+ * {@code MetricsSnapshot} is an immutable snapshot of the metrics of the
+ * product manager, the same ones exposed by {@link ProductManagerMXBean}.
+ */
+public final class MetricsSnapshot implements ProductManagerMXBean {
+	private final int productCount;
+	private final long reviewCount;
+	private final long parseErrorCount;
+	private final long lockCount;
+	private final long lockWaitNanos;
+	private final long lockHoldNanos;
+	private final Map<String, OperationStats> operations;
+	private final CacheStats reviewCacheStats;
+	private final DictionaryStats commentDictionaryStats;
+	
+	/**
+	 * Takes a snapshot of the current values of a management bean.
+	 */
+	MetricsSnapshot(ProductManagerMXBean source) {
+		this.productCount = source.getProductCount();
+		this.reviewCount = source.getReviewCount();
+		this.parseErrorCount = source.getParseErrorCount();
+		this.lockCount = source.getLockCount();
+		this.lockWaitNanos = source.getLockWaitNanos();
+		this.lockHoldNanos = source.getLockHoldNanos();
+		this.operations = source.getOperations();
+		this.reviewCacheStats = source.getReviewCacheStats();
+		this.commentDictionaryStats = source.getCommentDictionaryStats();
+	}
+	
+	@Override
+	public int getProductCount() {
+		return productCount;
+	}
+	
+	@Override
+	public long getReviewCount() {
+		return reviewCount;
+	}
+	
+	@Override
+	public long getParseErrorCount() {
+		return parseErrorCount;
+	}
+	
+	@Override
+	public long getLockCount() {
+		return lockCount;
+	}
+	
+	@Override
+	public long getLockWaitNanos() {
+		return lockWaitNanos;
+	}
+	
+	@Override
+	public long getLockHoldNanos() {
+		return lockHoldNanos;
+	}
+	
+	@Override
+	public Map<String, OperationStats> getOperations() {
+		return operations;
+	}
+	
+	@Override
+	public CacheStats getReviewCacheStats() {
+		return reviewCacheStats;
+	}
+	
+	@Override
+	public DictionaryStats getCommentDictionaryStats() {
+		return commentDictionaryStats;
+	}
+}
@@ -0,0 +1,100 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * {@code Money} represents amounts in fixed point: a {@code long} count of
+ * minor units of the currency, {@link #SCALE} decimal places, so
+ * {@code 1.99} is held as {@code 199}.
+ * <br>
+ * Products keep their price in minor units, so discounts are calculated and
+ * added up exactly without allocating. {@link BigDecimal} values are only
+ * created when amounts cross the public API.
+ */
+final class Money {
+	/**
+	 * Decimal places of the minor units of the currency.
+	 */
+	static final int SCALE = 2;
+	
+	/**
+	 * Decimal places of the fixed point rates, so a rate of {@code 0.1} is
+	 * held as {@code 100000}.
+	 */
+	static final int RATE_SCALE = 6;
+	
+	private static final long RATE_ONE = 1_000_000;
+	
+	private Money() {
+	}
+	
+	/**
+	 * @return the exact amount in minor units.
+	 * @throws IllegalArgumentException if the amount has more decimal places
+	 * than the currency or does not fit in a {@code long}.
+	 */
+	static long valueOf(BigDecimal amount) {
+		try {
+			return valueOf(amount, RoundingMode.UNNECESSARY);
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("Invalid amount " + amount + " " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * @return the amount in minor units, rounded to the currency scale.
+	 * @throws ArithmeticException if the amount does not fit in a {@code long}.
+	 */
+	static long valueOf(BigDecimal amount, RoundingMode rounding) {
+		return amount.setScale(SCALE, rounding).unscaledValue().longValueExact();
+	}
+	
+	static BigDecimal toBigDecimal(long units) {
+		return BigDecimal.valueOf(units, SCALE);
+	}
+	
+	/**
+	 * @return the rate in units of {@link #RATE_SCALE} decimal places.
+	 * @throws ArithmeticException if the rate has more decimal places.
+	 */
+	static long rate(BigDecimal rate) {
+		return rate.movePointRight(RATE_SCALE).longValueExact();
+	}
+	
+	/**
+	 * @param units an amount in minor units.
+	 * @param rate a rate from {@link #rate(BigDecimal)}.
+	 * @return the amount multiplied by the rate, rounded half up to the
+	 * currency scale.
+	 * @throws ArithmeticException if the result overflows.
+	 */
+	static long multiply(long units, long rate) {
+		long product = Math.multiplyExact(units, rate);
+		long result = product / RATE_ONE;
+		long remainder = Math.abs(product % RATE_ONE);
+		
+		if (remainder * 2 >= RATE_ONE) {
+			result += Long.signum(product);
+		}
+		
+		return result;
+	}
+}
@@ -0,0 +1,69 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * {@code NumberedFiles} finds the files of a folder named after a
+ * {@link MessageFormat} pattern whose only argument is a number, such as
+ * {@code {0,number,#}.snapshot}.
+ */
+final class NumberedFiles {
+	private NumberedFiles() {
+	}
+	
+	static Path resolve(Path folder, String pattern, long number) {
+		return folder.resolve(MessageFormat.format(pattern, number));
+	}
+	
+	/**
+	 * @return the matching files of the folder sorted by their number, empty
+	 * if the folder does not exist.
+	 */
+	static NavigableMap<Long, Path> list(Path folder, String pattern) throws IOException {
+		NavigableMap<Long, Path> files = new TreeMap<>();
+		
+		if (Files.notExists(folder)) {
+			return files;
+		}
+		
+		String[] parts = pattern.split("\\{0[^}]*\\}", -1);
+		Pattern name = Pattern.compile(Pattern.quote(parts[0]) + "(\\d+)" + Pattern.quote(parts[1]));
+		
+		try (Stream<Path> list = Files.list(folder)) {
+			list.forEach(file -> {
+				Matcher matcher = name.matcher(file.getFileName().toString());
+				
+				if (matcher.matches()) {
+					files.put(Long.parseLong(matcher.group(1)), file);
+				}
+			});
+		}
+		
+		return files;
+	}
+}
@@ -0,0 +1,63 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+/**
+ * {@code OperationStats} is an immutable snapshot of how many times an
+ * operation of the product manager ran and how long it took.
+ */
+public final class OperationStats {
+	private final long count;
+	private final long totalNanos;
+	private final long maxNanos;
+	
+	/**
+	 * @param count
+	 * @param totalNanos
+	 * @param maxNanos
+	 */
+	OperationStats(long count, long totalNanos, long maxNanos) {
+		this.count = count;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+	}
+	
+	public long getCount() {
+		return count;
+	}
+	
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+	
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+	
+	/**
+	 * @return the mean time of the operation, or 0 if it did not run.
+	 */
+	public long getMeanNanos() {
+		return count == 0 ? 0 : totalNanos / count;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("OperationStats [count=%d, meanNanos=%d, maxNanos=%d]", count, getMeanNanos(), maxNanos);
+	}
+}
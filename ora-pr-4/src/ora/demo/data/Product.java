@@ -21,7 +21,6 @@ import static ora.demo.data.Rating.NOT_RATED;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.Objects;
 
@@ -39,7 +38,7 @@ import java.util.Objects;
 public abstract class Product implements Rateable<Product>, Serializable {
 	private int id;           // You can use 'final' for ummutable objects.
 	private String name;      // You can use 'final' for ummutable objects.
-	private BigDecimal price; // You can use 'final' for ummutable objects.
+	private long price;       // Minor units of the currency, see Money.
 	private Rating rating;    // You can use 'final' for ummutable objects.
 	
 	/**
@@ -50,13 +49,15 @@ public abstract class Product implements Rateable<Product>, Serializable {
 	 */
 	public static final BigDecimal DISCOUNT_RATE=BigDecimal.valueOf(0.1);
 	
+	private static final long DISCOUNT_RATE_UNITS = Money.rate(DISCOUNT_RATE);
+	
 	/**
 	 * @param id
 	 * @param name
-	 * @param price
+	 * @param price the price in minor units of the currency.
 	 * @param rating
 	 */
-	Product(int id, String name, BigDecimal price, Rating rating) {
+	Product(int id, String name, long price, Rating rating) {
 		super();
 		this.id = id;
 		this.name = name;
@@ -67,9 +68,9 @@ public abstract class Product implements Rateable<Product>, Serializable {
 	/**
 	 * @param id
 	 * @param name
-	 * @param price
+	 * @param price the price in minor units of the currency.
 	 */
-	Product(int id, String name, BigDecimal price) {
+	Product(int id, String name, long price) {
 		this(id, name, price, NOT_RATED);
 	}
 	
@@ -90,6 +91,13 @@ public abstract class Product implements Rateable<Product>, Serializable {
 //	}
 	
 	public BigDecimal getPrice() {
+		return Money.toBigDecimal(price);
+	}
+	
+	/**
+	 * @return the price in minor units of the currency.
+	 */
+	long getPriceUnits() {
 		return price;
 	}
 	
@@ -109,7 +117,22 @@ public abstract class Product implements Rateable<Product>, Serializable {
 	 * value of the discount.
 	 */
 	public BigDecimal getDiscount() {
-		return price.multiply(DISCOUNT_RATE).setScale(2, RoundingMode.HALF_UP);
+		return Money.toBigDecimal(getDiscountUnits());
+	}
+	
+	/**
+	 * @return the discount in minor units of the currency.
+	 */
+	long getDiscountUnits() {
+		return getRateDiscountUnits();
+	}
+	
+	/**
+	 * @return the discount of the product in minor units of the currency
+	 * when it applies, regardless of any time based condition of its type.
+	 */
+	final long getRateDiscountUnits() {
+		return Money.multiply(price, DISCOUNT_RATE_UNITS);
 	}
 	
 //	/**
@@ -121,7 +144,7 @@ public abstract class Product implements Rateable<Product>, Serializable {
 
 	@Override
 	public String toString() {
-		return "Product [id=" + id + ", name=" + name + ", price=" + price + ", rating=" + rating + ", getBestBefore=" + getBestBefore() + "]";
+		return "Product [id=" + id + ", name=" + name + ", price=" + getPrice() + ", rating=" + rating + ", getBestBefore=" + getBestBefore() + "]";
 	}
 	
 	/**
@@ -0,0 +1,161 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * {@code ProductIndex} indexes products by rating, by price and by best
+ * before date, so products can be found without scanning the catalog.
+ * <br>
+ * Only food has a best before date of its own, other products are best
+ * before the current day and are kept apart, placed at the day they are
+ * queried.
+ * <br>
+ * This class is not thread safe. Each stripe of the catalog indexes its
+ * own products, guarded by the stripe lock, so writers of different
+ * stripes never wait for each other.
+ */
+final class ProductIndex {
+	private final Map<Rating, Set<Product>> byRating = new EnumMap<>(Rating.class);
+	private final NavigableMap<Long, Set<Product>> byPrice = new TreeMap<>();
+	private final NavigableMap<LocalDate, Set<Product>> byBestBefore = new TreeMap<>();
+	private final Set<Product> undated = new HashSet<>();
+	
+	void add(Product product) {
+		index(product);
+	}
+	
+	void replace(Product oldProduct, Product newProduct) {
+		// Products are equal by id, the old one must be removed before adding the new one.
+		unindex(oldProduct);
+		index(newProduct);
+	}
+	
+	void remove(Product product) {
+		unindex(product);
+	}
+	
+	void clear() {
+		byRating.clear();
+		byPrice.clear();
+		byBestBefore.clear();
+		undated.clear();
+	}
+	
+	List<Product> findByRating(Rating rating) {
+		return new ArrayList<>(byRating.getOrDefault(rating, Set.of()));
+	}
+	
+	/**
+	 * @param minPrice the minimum price, included, or {@code null} for no minimum.
+	 * @param maxPrice the maximum price, included, or {@code null} for no maximum.
+	 * @return the products by ascending price, none if the minimum is above the maximum.
+	 */
+	List<Product> findByPrice(BigDecimal minPrice, BigDecimal maxPrice) {
+		List<Product> result = new ArrayList<>();
+		Long min = minPrice == null ? null : Money.valueOf(minPrice, RoundingMode.CEILING);
+		Long max = maxPrice == null ? null : Money.valueOf(maxPrice, RoundingMode.FLOOR);
+		range(byPrice, min, max).values().forEach(result::addAll);
+		return result;
+	}
+	
+	/**
+	 * @param from the first date, included, or {@code null} for no first date.
+	 * @param to the last date, included, or {@code null} for no last date.
+	 * @param today the best before date of products without one.
+	 * @return the products best before a date between both dates, by
+	 * ascending date, none if the first date is after the last one.
+	 */
+	List<Product> findByBestBefore(LocalDate from, LocalDate to, LocalDate today) {
+		List<Product> result = new ArrayList<>();
+		boolean pending = (from == null || !today.isBefore(from)) && (to == null || !today.isAfter(to));
+		
+		for (Map.Entry<LocalDate, Set<Product>> entry : range(byBestBefore, from, to).entrySet()) {
+			if (pending && entry.getKey().isAfter(today)) {
+				result.addAll(undated);
+				pending = false;
+			}
+			result.addAll(entry.getValue());
+		}
+		
+		if (pending) {
+			result.addAll(undated);
+		}
+		
+		return result;
+	}
+	
+	private void index(Product product) {
+		byRating.computeIfAbsent(product.getRating(), r -> new HashSet<>()).add(product);
+		byPrice.computeIfAbsent(product.getPriceUnits(), p -> new HashSet<>()).add(product);
+		
+		if (product instanceof Food) {
+			byBestBefore.computeIfAbsent(product.getBestBefore(), d -> new HashSet<>()).add(product);
+		} else {
+			undated.add(product);
+		}
+	}
+	
+	private void unindex(Product product) {
+		remove(byRating, product.getRating(), product);
+		remove(byPrice, product.getPriceUnits(), product);
+		
+		if (product instanceof Food) {
+			remove(byBestBefore, product.getBestBefore(), product);
+		} else {
+			undated.remove(product);
+		}
+	}
+	
+	/**
+	 * @return the entries between both keys, included, none if the first
+	 * key is after the last one, as a sub map would reject them.
+	 */
+	private static <K extends Comparable<? super K>> NavigableMap<K, Set<Product>> range(NavigableMap<K, Set<Product>> index,
+			K from, K to) {
+		if (from != null && to != null && from.compareTo(to) > 0) {
+			return Collections.emptyNavigableMap();
+		}
+		
+		if (from != null) {
+			index = index.tailMap(from, true);
+		}
+		
+		return to == null ? index : index.headMap(to, true);
+	}
+	
+	private static <K> void remove(Map<K, Set<Product>> index, K key, Product product) {
+		Set<Product> products = index.get(key);
+		
+		if (products != null && products.remove(product) && products.isEmpty()) {
+			index.remove(key);
+		}
+	}
+}
@@ -18,12 +18,10 @@
 package ora.demo.data;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -32,377 +30,1950 @@ import java.text.NumberFormat;
 import java.text.ParseException;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.time.format.FormatStyle;
 import java.util.ArrayList;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 public class ProductManager {
-	private Map<Product, List<Review>> products = new HashMap<>();
 //	private ResourceFormatter formatter;
 	
-	private final ResourceBundle config = ResourceBundle.getBundle("ora.demo.data.config");
-	private final MessageFormat reviewFormat = new MessageFormat(config.getString("review.data.format"));
-	private final MessageFormat productFormat = new MessageFormat(config.getString("product.data.format"));
+	private final ResourceBundle config = loadConfig();
+	// Data files are parsed by several loader threads, each one with its own parser.
+	private final ThreadLocal<CsvParser> csvParser = ThreadLocal.withInitial(CsvParser::new);
+	// Data files are read as bytes, into a buffer of each thread or memory mapped if large.
+	private final int mapThreshold = Integer.parseInt(config.getString("data.map.threshold"));
+	private final ThreadLocal<DataFileReader> fileReader = ThreadLocal.withInitial(() -> new DataFileReader(mapThreshold));
 	
 	private final Path reportsFolder = Path.of(config.getString("reports.folder"));
 	private final Path dataFolder = Path.of(config.getString("data.folder"));
 	private final Path tempFolder = Path.of(config.getString("temp.folder"));
 	
-	private static final Map<String, ResourceFormatter> formatters = Map.of(
-		"es-ES", new ResourceFormatter(new Locale("es", "ES")),
-		"en-US", new ResourceFormatter(Locale.US),
-		"en-GB", new ResourceFormatter(Locale.UK),
-		"fr-FR", new ResourceFormatter(Locale.FRANCE),
-		"zh-CH", new ResourceFormatter(Locale.CHINA)
+	private final boolean lazyReviews = Boolean.parseBoolean(config.getString("reviews.lazy"));
+	private final ReviewCache reviewCache = new ReviewCache(Integer.parseInt(config.getString("reviews.cache.size")));
+	
+	private final Journal journal;
+	// Applies changes of the data folder to the catalog, null if data.watch is disabled.
+	private final DataFolderWatcher watcher;
+	// Part of each reviews file whose reviews are in the catalog, as last read or written by it.
+	private final Map<Integer, FilePrefix> reviewFiles = new ConcurrentHashMap<>();
+	private final long checkpointSize = Long.parseLong(config.getString("journal.checkpoint.size"));
+	private final AtomicBoolean checkpointPending = new AtomicBoolean();
+	private final ExecutorService checkpointer = Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task, "checkpoint");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private final ReportPipeline reportPipeline = new ReportPipeline(this::renderProductReport,
+			Integer.parseInt(config.getString("report.threads")),
+			Integer.parseInt(config.getString("report.queue.size")),
+			Long.parseLong(config.getString("report.coalesce.millis")),
+			Integer.parseInt(config.getString("report.write.batch")));
+	
+	// Runs the operations of the asynchronous methods.
+	private final ExecutorService asyncExecutor = newAsyncExecutor(config.getString("async.executor"),
+			Integer.parseInt(config.getString("async.threads")));
+	
+	// Review comments shared by every review with the same text.
+	private final CommentDictionary commentDictionary = new CommentDictionary();
+	
+	// Operation, lock and parse error counters, always enabled.
+	private final Metrics metrics = new Metrics();
+	
+	private final Stripe[] stripes = Stream.generate(() -> new Stripe(metrics))
+			.limit(Integer.highestOneBit(Math.max(1, Integer.parseInt(config.getString("lock.stripes")))))
+			.toArray(Stripe[]::new);
+	
+	// Partitions of the catalog, each one with a contiguous range of stripes.
+	private final Shard[] shards = newShards(Integer.parseInt(config.getString("catalog.shards")), stripes);
+	
+	// Formatters of the supported locales, caching the text rendered by this instance.
+	private final Map<String, ResourceFormatter> formatters = locales.entrySet()
+			.stream()
+			.collect(Collectors.toMap(Map.Entry::getKey,
+					e -> new ResourceFormatter(e.getValue(), Integer.parseInt(config.getString("format.cache.size")))));
+	
+	private static final Map<String, Locale> locales = Map.of(
+		"es-ES", new Locale("es", "ES"),
+		"en-US", Locale.US,
+		"en-GB", Locale.UK,
+		"fr-FR", Locale.FRANCE,
+		"zh-CH", Locale.CHINA
 	);
 	
 	private static final Logger logger = Logger.getLogger(ProductManager.class.getName());
-	private static final ProductManager pm = new ProductManager();
 	
-	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-	private final Lock writeLock = lock.writeLock();
-	private final Lock readLock = lock.readLock();
+	/**
+	 * Value of the products map for products whose reviews are loaded on demand
+	 * through the review cache.
+	 */
+	private static final List<Review> NOT_LOADED = Collections.emptyList();
 	
 	public static ProductManager getInstance() {
-		return pm;
+		return InstanceHolder.pm;
 	}
 	
-	private ProductManager() {
-		loadAllData();
+	/**
+	 * Restores the newest snapshot, or loads the data folder if there is none,
+	 * and then replays the journal on top of it.
+	 * <br>
+	 * Besides the singleton, benchmarks create their own instances, which
+	 * must be closed.
+	 */
+	ProductManager() {
+		long segment = restoreData();
+		
+		if (segment < 0) {
+			loadAllData();
+			segment = 0;
+		}
+		
+		journal = openJournal(segment);
+		watcher = watchData();
 	}
 
+	/**
+	 * Closes the journal of an instance that is no longer used.
+	 */
+	void close() {
+		try {
+			if (watcher != null) {
+				watcher.close();
+			}
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Error closing data folder watcher " + e.getMessage());
+		}
+		
+		checkpointer.shutdown();
+		asyncExecutor.shutdown();
+		reportPipeline.close();
+		
+		try {
+			if (journal != null) {
+				journal.close();
+			}
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Error closing journal " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Creates the executor of the asynchronous methods: a virtual thread per
+	 * operation if {@code async.executor} is {@code virtual} and the Java
+	 * runtime supports them, otherwise a pool of daemon platform threads.
+	 * @param threads number of platform threads, 0 for one per processor.
+	 */
+	private static ExecutorService newAsyncExecutor(String type, int threads) {
+		if ("virtual".equals(type)) {
+			return VirtualThreads.newPerTaskExecutor(() -> newAsyncExecutor(threads));
+		}
+		
+		return newAsyncExecutor(threads);
+	}
+	
+	private static ExecutorService newAsyncExecutor(int threads) {
+		AtomicInteger count = new AtomicInteger();
+		
+		return Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), task -> {
+			Thread thread = new Thread(task, "async-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Splits the stripes into shards.
+	 * @param count the number of shards, rounded down to a power of two and
+	 * at most one per stripe.
+	 */
+	private static Shard[] newShards(int count, Stripe[] stripes) {
+		Shard[] shards = new Shard[Math.min(Integer.highestOneBit(Math.max(1, count)), stripes.length)];
+		
+		for (int i = 0; i < shards.length; i++) {
+			shards[i] = new Shard(i, shards.length, stripes);
+		}
+		
+		return shards;
+	}
+	
+	/**
+	 * Loads the configuration, where a system property named
+	 * {@code ora.demo.data.<key>} overrides the value of the key.
+	 */
+	private static ResourceBundle loadConfig() {
+		ResourceBundle config = ResourceBundle.getBundle("ora.demo.data.config");
+		
+		return new ResourceBundle() {
+			@Override
+			protected Object handleGetObject(String key) {
+				String value = System.getProperty("ora.demo.data." + key);
+				return value != null ? value : config.getObject(key);
+			}
+			
+			@Override
+			public Enumeration<String> getKeys() {
+				return config.getKeys();
+			}
+		};
+	}
+	
 	public static Set<String> getSupportedLocales() {
-		return formatters.keySet();
+		return locales.keySet();
 	}
 	
+	/**
+	 * @throws IllegalArgumentException if the price has more decimal places
+	 * than the currency, as it is never rounded.
+	 */
 	public Product createProduct(int id, String name, BigDecimal price, Rating rating, LocalDate bestBefore) {
 		Product product = null; 
 		
+		Stripe stripe = stripe(id);
+		long sequence = 0;
+		long units = Money.valueOf(price);
+		
 		try {
-			readLock.lock();;
-			product = new Food(id, name, price, rating, bestBefore);
-			products.putIfAbsent(product, new ArrayList<Review>());
+			stripe.writeLock.lock();
+			product = new Food(id, name, units, rating, bestBefore);
+			
+			if (addProduct(product, lazyReviews ? NOT_LOADED : new ReviewList())) {
+				sequence = logProduct(product);
+			}
 		} catch (Exception e) {
 			logger.log(Level.INFO, "Error adding product " + e.getMessage());
 			return null;
 		} finally {
-			readLock.unlock();
+			stripe.writeLock.unlock();
 		}
 		
+		syncJournal(sequence);
 		return product;
 	}
 	
+	/**
+	 * @throws IllegalArgumentException if the price has more decimal places
+	 * than the currency, as it is never rounded.
+	 */
 	public Product createProduct(int id, String name, BigDecimal price, Rating rating) {
 		Product product = null;
 		
+		Stripe stripe = stripe(id);
+		long sequence = 0;
+		long units = Money.valueOf(price);
+		
 		try {
-			readLock.lock();
-			product = new Drink(id, name, price, rating);
-			products.putIfAbsent(product, new ArrayList<Review>());
+			stripe.writeLock.lock();
+			product = new Drink(id, name, units, rating);
+			
+			if (addProduct(product, lazyReviews ? NOT_LOADED : new ReviewList())) {
+				sequence = logProduct(product);
+			}
 		} catch (Exception e) {
 			logger.log(Level.INFO, "Error adding product " + e.getMessage());
 			return null;
 		} finally {
-			readLock.unlock();
+			stripe.writeLock.unlock();
 		}
 		
+		syncJournal(sequence);
 		return product;
 	}
 	
-	private Review parseReview(String text) {
-		Review review = null;
+	/**
+	 * Must be called holding the write lock of the product stripe.
+	 * @return whether the product was added, it is not if its id already exists.
+	 */
+	private boolean addProduct(Product product, List<Review> reviews) {
+		Stripe stripe = stripe(product.getId());
 		
-		try {
-			Object[] values =  reviewFormat.parse(text);
-			
-			review = new Review(
-					Rateable.convert(Integer.parseInt((String) values[0])),
-					(String)values[1]);
-		} catch (ParseException | NumberFormatException e) {
-			logger.log(Level.WARNING, "Error parsing review " + text);
+		if (stripe.products.putIfAbsent(product.getId(), product) == null) {
+			Shard shard = shard(product.getId());
+			shard.products.put(product, reviews);
+			shard.discounts.add(product);
+			stripe.index.add(product);
+			stripe.ratings.put(product.getId(), reviews == NOT_LOADED ? new RatingHistogram() : new RatingHistogram(reviews));
+			return true;
 		}
 		
-		return review;
+		return false;
 	}
 	
-	private Product parseProduct(String text) {
-		Product product = null;
+	/**
+	 * Replaces the catalog, splitting it into the shards, and rebuilds the id
+	 * index, the rating histograms, the discount totals and the product index.
+	 * Must be called holding every stripe write lock.
+	 * @param posted the reviews of each product posted through the catalog.
+	 */
+	private void indexProducts(Map<Product, List<Review>> catalog, Map<Integer, List<Review>> posted) {
+		for (Stripe stripe : stripes) {
+			stripe.products.clear();
+			stripe.ratings.clear();
+			stripe.index.clear();
+			stripe.posted.clear();
+		}
+		for (Shard shard : shards) {
+			shard.products.clear();
+			shard.discounts.clear();
+		}
+		
+		catalog.forEach((p, reviews) -> {
+			Stripe stripe = stripe(p.getId());
+			Shard shard = shard(p.getId());
+			stripe.products.put(p.getId(), p);
+			shard.products.put(p, reviews);
+			shard.discounts.add(p);
+			stripe.index.add(p);
+			stripe.ratings.put(p.getId(), reviews == NOT_LOADED ? new RatingHistogram() : new RatingHistogram(reviews));
+		});
 		
+		posted.forEach((id, reviews) -> stripe(id).posted.put(id, new ReviewList(reviews)));
+	}
+	
+	private Journal openJournal(long segment) {
 		try {
-			Object[] values = productFormat.parse(text);
-			int id = Integer.parseInt((String)values[1]);
-			String name = (String)values[2];
-			BigDecimal price = BigDecimal.valueOf(Double.parseDouble((String)values[3]));
-			Rating rating = Rateable.convert(Integer.parseInt((String)values[4]));
+			Journal journal = new Journal(tempFolder, config.getString("journal.file"),
+					Journal.SyncPolicy.valueOf(config.getString("journal.sync")),
+					Long.parseLong(config.getString("journal.sync.interval")));
 			
-			switch ((String)values[0]) {
-			case "D":
-				product = new Drink(id, name, price, rating);
-				break;
+			try {
+				lockAll(true);
+				long records = journal.replay(segment, new Journal.Handler() {
+					@Override
+					public void product(Product product) {
+						addProduct(product, lazyReviews ? NOT_LOADED : new ReviewList());
+					}
+					
+					@Override
+					public void review(int productId, Review review, Rating productRating) {
+						Product product = stripe(productId).products.get(productId);
+						
+						if (product == null) {
+							logger.log(Level.WARNING, "Journal review of unknown product " + productId);
+						} else if (shard(productId).products.get(product) == NOT_LOADED) {
+							// The review is already in the reviews file, only the rating is missing.
+							replaceProduct(product, product.applyRating(productRating));
+						} else {
+							reviewProduct(product, getReviews(product), newReview(review.getRating(), review.getComments()));
+						}
+					}
+				});
 				
-			case "F":
-				LocalDate bestBefore = LocalDate.parse((String) values[5]);
-				product = new Food(id, name, price, rating, bestBefore);
-				break;
+				if (records > 0) {
+					logger.log(Level.INFO, "Replayed " + records + " journal records");
+				}
+			} finally {
+				unlockAll(true);
 			}
 			
-		} catch (ParseException | NumberFormatException | DateTimeParseException e) {
-			logger.log(Level.WARNING, "Error parsing product " + text + " " + e.getMessage()); 
+			return journal;
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Error opening journal, changes will not be persisted " + e.getMessage());
+			return null;
 		}
-		
-		return product;
 	}
 	
-	private List<Review> loadReviews(Product product) {
-		List<Review> reviews = null;
-		Path file = dataFolder.resolve(MessageFormat.format(config.getString("reviews.data.file"), product.getId()));
-		
-		if (Files.notExists(file)) {
-			reviews = new ArrayList<>();
-		} else {
-			try {
-				reviews = Files.lines(file, Charset.forName("UTF-8"))
-					.map(text -> parseReview(text))
-					.filter(review -> review != null)
-					.collect(Collectors.toList());
-			} catch (IOException e) {
-				logger.log(Level.WARNING, "Error loading reviews " + e.getMessage());
-			}
+	/**
+	 * Appends a new product to the journal. Must be called holding the write
+	 * lock of the product stripe.
+	 * @return the journal sequence number of the record, 0 if it was not written.
+	 */
+	private long logProduct(Product product) {
+		try {
+			return journal == null ? 0 : checkpoint(journal.logProduct(product));
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Error writing journal " + e.getMessage());
+			return 0;
 		}
-		
-		return reviews;
 	}
 	
-	private Product loadProduct(Path file) {
-		Product product = null;
-		
-		try {
-			product = parseProduct(Files.lines(dataFolder.resolve(file), Charset.forName("UTF-8")).findFirst().orElseThrow());
-		} catch (Exception e) {
-			logger.log(Level.WARNING, "Error loading message " + e.getMessage());
+	/**
+	 * Persists a new review before it is added to the product. Must be called
+	 * holding the write lock of the product stripe.
+	 * @param productRating the rating of the product after the review.
+	 * @return the journal sequence number of the record, 0 if it was not written.
+	 */
+	private long logReview(Product product, Review review, Rating productRating) {
+		if (lazyReviews) {
+			// Cached reviews can be evicted at any time, so the file is kept up to date.
+			appendReviews(product, List.of(review));
 		}
 		
-		return product;
+		return journalReview(product.getId(), review, productRating);
 	}
 	
-	private void loadAllData () {
+	/**
+	 * @param productRating the rating of the product after the review.
+	 * @return the journal sequence number of the record, 0 if it was not written.
+	 */
+	private long journalReview(int productId, Review review, Rating productRating) {
 		try {
-			products = Files.list(dataFolder)
-					.filter(file -> file.getFileName().toString().startsWith("product"))
-					.map(file -> loadProduct(file))
-					.filter(product -> product != null)
-					.collect(Collectors.toMap(product -> product, product -> loadReviews(product)));
+			return journal == null ? 0 : checkpoint(journal.logReview(productId, review, productRating));
 		} catch (IOException e) {
-			logger.log(Level.SEVERE, "Error loading data " + e.getMessage());
+			logger.log(Level.SEVERE, "Error writing journal " + e.getMessage());
+			return 0;
 		}
 	}
 	
-	private void dumpData() {
-		Path tempFile;	
-		
+	/**
+	 * Waits until a journal record is durable. Called after releasing the
+	 * stripe lock, so concurrent writers can share the same disk sync.
+	 */
+	private void syncJournal(long sequence) {
 		try {
-			if (Files.notExists(tempFolder)) {
-				Files.createDirectory(tempFolder);
-			}
-			
-			String filename = String.valueOf(MessageFormat.format(config.getString("temp.file"), Instant.now().getEpochSecond()));
-			
-			tempFile = tempFolder.resolve(filename);	
-			
-			try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(tempFile, StandardOpenOption.CREATE))) {
-				out.writeObject(products);
-//				products = new HashMap<>();
+			if (sequence > 0) {
+				journal.sync(sequence);
 			}
 		} catch (IOException e) {
-			logger.log(Level.SEVERE, "Error dumping  data " + e.getMessage());
+			logger.log(Level.SEVERE, "Error syncing journal " + e.getMessage());
 		}
 	}
 	
-	@SuppressWarnings("unchecked")
-	private void restoreData() {
-		try {
-			Path tempFile = Files.list(tempFolder)
-					.filter(path -> path.getFileName().toString().endsWith("tmp"))
-					.findFirst()
-					.orElseThrow();
-			
-			try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(tempFile, StandardOpenOption.DELETE_ON_CLOSE))) {
-				products = (HashMap)in.readObject();
-			}
-		} catch (Exception e) {
-			logger.log(Level.SEVERE, "Error restoring data " + e.getMessage());
+	/**
+	 * Schedules a snapshot once the current journal segment grows past
+	 * {@code journal.checkpoint.size} bytes.
+	 */
+	private long checkpoint(long sequence) {
+		if (journal.size() > checkpointSize) {
+			scheduleCheckpoint();
+		}
+		
+		return sequence;
+	}
+	
+	private void scheduleCheckpoint() {
+		if (checkpointPending.compareAndSet(false, true)) {
+			checkpointer.execute(() -> {
+				try {
+					dumpData();
+				} finally {
+					checkpointPending.set(false);
+				}
+			});
 		}
 	}
 	
 	/**
-	 * 
-	 * @return A map storing rating number of stars and discount per rating.
+	 * Gets the reviews of a product, loading them through the review cache
+	 * if they are loaded on demand. Must be called holding a stripe lock.
 	 */
-	public Map<String, String> getDiscounts(String languageTag) {
-		try {
-			readLock.lock();
-			
-			ResourceFormatter formatter = formatters.getOrDefault(languageTag, formatters.get("en-GB"));
-			
-			return products.keySet()
-					.stream()
-					.collect(
-							Collectors.groupingBy(
-									p -> p.getRating().getStars(),
-									Collectors.collectingAndThen(
-											Collectors.summingDouble(p -> p.getDiscount().doubleValue()),
-											d -> formatter.moneyFormat.format(d))));
-		} finally {
-			readLock.unlock();
+	private List<Review> getReviews(Product product) {
+		List<Review> reviews = shard(product.getId()).products.get(product);
+		
+		if (reviews != NOT_LOADED) {
+			return reviews;
 		}
+		
+		RatingHistogram histogram = stripe(product.getId()).ratings.get(product.getId());
+		
+		return reviewCache.get(product.getId(), id -> {
+			List<Review> loaded = loadReviews(product);
+			histogram.load(loaded);
+			return loaded;
+		});
 	}
 	
-	public Product findProduct(int productId) throws ProductManagerException {
-		try {
-			readLock.lock();
-			return products.keySet()
-					.stream()
-					.filter(p -> p.getId() == productId)
-					.findFirst()
-					.orElseThrow(() -> new ProductManagerException("Product with id " + productId + " not found"));
-		} finally {
-			readLock.unlock();
+	/**
+	 * Gets the reviews of a product without caching them.
+	 */
+	private List<Review> peekReviews(Product product) {
+		List<Review> reviews = shard(product.getId()).products.get(product);
+		
+		if (reviews != NOT_LOADED) {
+			return reviews;
 		}
+		
+		reviews = reviewCache.peek(product.getId());
+		return reviews != null ? reviews : loadReviews(product);
 	}
 	
-	public Product reviewProduct(int productId, Rating rating, String comments) {
+	/**
+	 * @return hit and miss statistics of the review cache used when
+	 * {@code reviews.lazy} is enabled.
+	 */
+	public CacheStats getReviewCacheStats() {
+		return reviewCache.getStats();
+	}
+	
+	/**
+	 * @return a snapshot of the operation, lock and catalog metrics, also
+	 * exposed through JMX.
+	 */
+	public MetricsSnapshot getMetrics() {
+		return new MetricsSnapshot(new Management());
+	}
+	
+	/**
+	 * Registers the management bean of the instance.
+	 */
+	private void registerMBean() {
 		try {
-			writeLock.lock();
-			return reviewProduct(findProduct(productId), rating, comments);
-		} catch (ProductManagerException e) {
-			logger.log(Level.INFO, e.getMessage());
-			return null;
-		} finally {
-			writeLock.unlock();
+			ManagementFactory.getPlatformMBeanServer()
+					.registerMBean(new Management(), new ObjectName("ora.demo.data:type=ProductManager"));
+		} catch (JMException e) {
+			logger.log(Level.WARNING, "Error registering management bean " + e.getMessage());
 		}
 	}
 	
-	private Product reviewProduct(Product product, Rating rating, String comments) {
-		List<Review> reviews = products.get(product);
+	private long countReviews() {
+		long[] count = new long[1];
 		
-		// It's not possible to update the product in a HashMap.
-		products.remove(product, reviews);
-		reviews.add(new Review(rating, comments));
+		for (Stripe stripe : stripes) {
+			try {
+				stripe.readLock.lock();
+				stripe.ratings.forEachValue(histogram -> count[0] += histogram.getTotal());
+			} finally {
+				stripe.readLock.unlock();
+			}
+		}
 		
-		product = product.applyRating(
-				Rateable.convert(
-					(int)Math.round(
-						reviews.stream()
-						.mapToInt(r -> r.getRating().ordinal())
-						.average()
-						.orElse(0))));
+		return count[0];
+	}
 	
-		// Add the updated product.
-		products.put(product, reviews);
-		return product;
+	private Stripe stripe(int productId) {
+		return stripes[index(productId, stripes.length)];
 	}
 	
-	public void printProductReport(int productId, String languageTag, String client) {
-		try {
-			readLock.lock();
-			printProductReport(findProduct(productId), languageTag, client);
-		} catch (IOException e) {
-			logger.log(Level.SEVERE, "Error printing product report " + e.getMessage(), e);
-		} catch (ProductManagerException e) {
-			logger.log(Level.INFO, e.getMessage());
-		} finally {
-			readLock.unlock();
+	/**
+	 * Shards and stripes are picked by the same high bits of the hash, so the
+	 * stripes of a product always belong to its shard.
+	 */
+	private Shard shard(int productId) {
+		return shards[index(productId, shards.length)];
+	}
+	
+	/**
+	 * Picks a stripe or a shard by the high bits of the hash of a product id,
+	 * as the maps of a stripe pick their slots by the low bits of the same
+	 * hash: the ids of a stripe sharing their low bits would only ever fall
+	 * in a fraction of the slots.
+	 * @param count the number of stripes or shards, a power of two.
+	 */
+	private static int index(int productId, int count) {
+		return (int) (((productId * 0x9E3779B9) & 0xFFFFFFFFL) * count >>> 32);
+	}
+	
+	/**
+	 * Locks every stripe, always in the same order, so catalog wide operations
+	 * see a consistent view of all products.
+	 * @param exclusive whether write locks or read locks must be acquired.
+	 */
+	private void lockAll(boolean exclusive) {
+		lock(stripes, exclusive);
+	}
+	
+	private void unlockAll(boolean exclusive) {
+		unlock(stripes, exclusive);
+	}
+	
+	/**
+	 * Locks some stripes by ascending index, the order of {@link #lockAll},
+	 * so shards can be locked on their own without deadlocks.
+	 */
+	private static void lock(Stripe[] stripes, boolean exclusive) {
+		for (Stripe stripe : stripes) {
+			(exclusive ? stripe.writeLock : stripe.readLock).lock();
 		}
 	}
 	
-	private void printProductReport(Product product, String languageTag, String client) throws IOException {
-		ResourceFormatter formatter = formatters.getOrDefault(languageTag, formatters.get("en-GB"));
+	private static void unlock(Stripe[] stripes, boolean exclusive) {
+		for (int i = stripes.length - 1; i >= 0; i--) {
+			(exclusive ? stripes[i].writeLock : stripes[i].readLock).unlock();
+		}
+	}
+	
+	/**
+	 * @return a review whose comments are shared through the comment
+	 * dictionary. Missing comments are empty, as in the data files.
+	 */
+	private Review newReview(Rating rating, String comments) {
+		return new Review(rating, commentDictionary.intern(comments == null ? "" : comments));
+	}
+	
+	/**
+	 * Parses a review line: rating and comments, quoted if they contain commas.
+	 * @param data the bytes of the file, positioned at the line, which is consumed.
+	 * @param file the file being parsed, for error messages.
+	 * @param line the line number, for error messages.
+	 * @return the review, or {@code null} if the line is not valid.
+	 */
+	private Review parseReview(ByteBuffer data, Path file, int line) {
+		Review review = null;
+		CsvParser csv = csvParser.get();
 		
-		List<Review> reviews = products.get(product);
-		Collections.sort(reviews);
+		try {
+			csv.parse(data, 2);
+			review = newReview(Rateable.convert(csv.getInt(0)), csv.getString(1));
+		} catch (ParseException | RuntimeException e) {
+			metrics.parseError();
+			logger.log(Level.WARNING, "Error parsing review " + file.getFileName() + ":" + line + " " + e.getMessage());
+		}
 		
-		Path productFile = reportsFolder
-				.resolve(MessageFormat.format(config.getString("report.file"), product.getId(), client));
+		return review;
+	}
+	
+	/**
+	 * Parses a product line: type (D or F), id, name, price, rating and, for food, best before date.
+	 * @param data the bytes of the file, positioned at the line, which is consumed.
+	 * @param file the file being parsed, for error messages.
+	 * @param line the line number, for error messages.
+	 * @return the product, or {@code null} if the line is not valid.
+	 */
+	private Product parseProduct(ByteBuffer data, Path file, int line) {
+		Product product = null;
+		CsvParser csv = csvParser.get();
 		
-		try(PrintWriter out = new PrintWriter(new OutputStreamWriter(Files.newOutputStream(productFile, StandardOpenOption.CREATE), "UTF-8"))) {
-			out.append(formatter.formatProduct(product));
-			out.append(System.lineSeparator());
+		try {
+			csv.parse(data, 6);
+			String type = csv.getString(0);
+			int id = csv.getInt(1);
+			String name = csv.getString(2);
+			BigDecimal price = csv.getDecimal(3);
+			Rating rating = Rateable.convert(csv.getInt(4));
 			
-			if (reviews.isEmpty()) {
-				out.append(formatter.getText("no.reviews") + System.lineSeparator());
-			} else {
-				out.append(reviews.stream()
-						.map(r -> formatter.formatReview(r) + System.lineSeparator())
-						.collect(Collectors.joining()));
+			switch (type) {
+			case "D":
+				product = new Drink(id, name, Money.valueOf(price), rating);
+				break;
+				
+			case "F":
+				LocalDate bestBefore = csv.getDate(5);
+				product = new Food(id, name, Money.valueOf(price), rating, bestBefore);
+				break;
 				
-				// It could be 'reviews.stream().forEach(r -> txt.append(formatter.formatReview(r) + '\n'));'
-				// but this statement has some parallel processing implications because of the order in which
-				// StringBuilder and forEach method work.
+			default:
+				throw new ParseException("Unknown product type " + type, 0);
 			}
+			
+		} catch (ParseException | RuntimeException e) {
+			metrics.parseError();
+			logger.log(Level.WARNING, "Error parsing product " + file.getFileName() + ":" + line + " " + e.getMessage()); 
 		}
+		
+		return product;
 	}
 	
-	public void printProducts(Predicate<Product> filter, Comparator<Product> sorter, String languageTag) {
+	/**
+	 * Loads every review of a product from its reviews file. Unless reviews
+	 * are loaded on demand, the part of the file read is recorded, as its
+	 * reviews are now those of the catalog.
+	 */
+	private List<Review> loadReviews(Product product) {
+		ReviewsUpdate update = readReviews(product.getId(), true);
+		
+		if (update == null) {
+			return new ReviewList();
+		}
+		
+		if (!lazyReviews) {
+			reviewFiles.put(product.getId(), update.prefix);
+		}
+		
+		return update.reviews;
+	}
+	
+	/**
+	 * Reads the reviews file of a product. Unless the whole file is requested,
+	 * nothing is parsed if the file is still the part already read, and only
+	 * the reviews appended to that part are if the file starts with it, but
+	 * for reviews loaded on demand, which are counted again from the file.
+	 * @param whole whether every review of the file is parsed.
+	 * @return the reviews read, or {@code null} if the file cannot be read.
+	 */
+	private ReviewsUpdate readReviews(int productId, boolean whole) {
+		Path file = reviewsFile(productId);
+		FilePrefix known = reviewFiles.get(productId);
+		
 		try {
-			readLock.lock();
+			ByteBuffer data = Files.exists(file) ? fileReader.get().read(file) : ByteBuffer.allocate(0);
+			FilePrefix head = known != null && known.getLength() <= data.limit()
+					? FilePrefix.of(data, (int) known.getLength())
+					: FilePrefix.EMPTY;
+			FilePrefix prefix = head.extend(data, data.limit());
+			boolean appended = !whole && !lazyReviews && head.equals(known);
+			List<Review> reviews = new ReviewList();
+			int line = 0;
 			
-			ResourceFormatter formatter = formatters.getOrDefault(languageTag, formatters.get("en-GB"));
-			StringBuilder txt = new StringBuilder();
+			data.position(appended ? (int) head.getLength() : 0);
 			
-			products.keySet()
-			.stream()
-			.sorted(sorter)
-			.filter(filter)
-			.forEach(p -> txt.append(formatter.formatProduct(p) + '\n'));
+			if (!whole && prefix.equals(known)) {
+				data.position(data.limit());
+			}
 			
-			System.out.println(txt);
-		} finally {
-			readLock.unlock();
+			while (data.hasRemaining()) {
+				Review review = parseReview(data, file, ++line);
+				
+				if (review != null) {
+					reviews.add(review);
+				}
+			}
+			
+			return new ReviewsUpdate(known, prefix, appended, reviews);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Error loading reviews " + e.getMessage());
+			return null;
 		}
 	}
 	
-	private static class ResourceFormatter {
-		private ResourceBundle resources;
-		private DateTimeFormatter dateFormat;
-		private NumberFormat moneyFormat;
+	private Path productFile(int productId) {
+		return dataFolder.resolve(MessageFormat.format(config.getString("product.data.file"), productId));
+	}
+	
+	private Path reviewsFile(int productId) {
+		return dataFolder.resolve(MessageFormat.format(config.getString("reviews.data.file"), productId));
+	}
+	
+	private void appendReviews(Product product, List<Review> reviews) {
+		Path file = reviewsFile(product.getId());
 		
-		private ResourceFormatter(Locale locale) {
-			resources = ResourceBundle.getBundle("ora.demo.data.resources", locale);
+		byte[] bytes = reviews.stream()
+				.map(review -> review.getRating().ordinal() + "," + CsvParser.quote(review.getComments()) + System.lineSeparator())
+				.collect(Collectors.joining())
+				.getBytes(StandardCharsets.UTF_8);
+		
+		try {
+			FilePrefix known = reviewFiles.get(product.getId());
+			long size = Files.exists(file) ? Files.size(file) : 0;
+			
+			Files.write(file, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			
+			// Written by the catalog, the data folder watcher must not read it
+			// again, unless it changed since it was last read.
+			if (known != null && known.getLength() == size) {
+				reviewFiles.put(product.getId(), known.append(bytes));
+			} else {
+				reviewFiles.remove(product.getId());
+			}
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Error saving review " + e.getMessage());
+		}
+	}
+	
+	private Product loadProduct(Path file) {
+		Product product = null;
+		
+		try {
+			ByteBuffer data = fileReader.get().read(dataFolder.resolve(file));
+			
+			if (!data.hasRemaining()) {
+				throw new IOException("Empty file " + file);
+			}
+			product = parseProduct(data, file, 1);
+		} catch (Exception e) {
+			logger.log(Level.WARNING, "Error loading message " + e.getMessage());
+		}
+		
+		return product;
+	}
+	
+	/**
+	 * Loads every product file of the data folder, and its reviews, using
+	 * {@code loader.threads} worker threads (all available processors if 0).
+	 * The loaded catalog replaces the current one in a single step once all
+	 * files have been read.
+	 */
+	private void loadAllData () {
+		long start = System.nanoTime();
+		int threads = Integer.parseInt(config.getString("loader.threads"));
+		ExecutorService loader = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+		
+		try (Stream<Path> files = Files.list(dataFolder)) {
+			List<Path> productFiles = files
+					.filter(file -> file.getFileName().toString().startsWith("product"))
+					.collect(Collectors.toList());
+			
+			int total = productFiles.size();
+			int step = Math.max(1, total / 10);
+			AtomicInteger done = new AtomicInteger();
+			Map<Product, List<Review>> loaded = new ConcurrentHashMap<>(total);
+			
+			List<Callable<Product>> tasks = productFiles.stream()
+					.map(file -> (Callable<Product>) () -> {
+						Product product = loadProduct(file);
+						
+						if (product != null) {
+							loaded.put(product, lazyReviews ? NOT_LOADED : loadReviews(product));
+						}
+						
+						int count = done.incrementAndGet();
+						
+						if (count % step == 0 || count == total) {
+							logger.log(Level.INFO, "Loaded " + count + " of " + total + " product files");
+						}
+						
+						return product;
+					})
+					.collect(Collectors.toList());
+			
+			for (Future<Product> result : loader.invokeAll(tasks)) {
+				result.get();
+			}
+			
+			try {
+				lockAll(true);
+				indexProducts(loaded, Map.of());
+			} finally {
+				unlockAll(true);
+			}
+		} catch (IOException | InterruptedException | ExecutionException e) {
+			logger.log(Level.SEVERE, "Error loading data " + e.getMessage());
+		} finally {
+			loader.shutdown();
+			metrics.record(Metrics.Operation.LOAD, start);
+		}
+	}
+	
+	/**
+	 * Starts applying the changes of the data folder to the catalog if
+	 * {@code data.watch} is enabled.
+	 * @return the watcher, or {@code null} if it is disabled or the folder
+	 * cannot be watched.
+	 */
+	private DataFolderWatcher watchData() {
+		if (!Boolean.parseBoolean(config.getString("data.watch"))) {
+			return null;
+		}
+		
+		try {
+			return new DataFolderWatcher(dataFolder,
+					config.getString("product.data.file"),
+					config.getString("reviews.data.file"),
+					Long.parseLong(config.getString("data.watch.debounce.millis")),
+					Integer.parseInt(config.getString("data.watch.batch.size")),
+					this::reloadData);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Error watching data folder " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * Applies a batch of changes of the data folder to the catalog. The files
+	 * are read first, then each stripe is locked once to apply the changes of
+	 * all its products. The changes are not journaled, so a snapshot is
+	 * scheduled once they are applied.
+	 * @param productIds products whose product file was created, modified or deleted.
+	 * @param reviewIds products whose reviews file was created, modified or deleted.
+	 */
+	private void reloadData(Set<Integer> productIds, Set<Integer> reviewIds) {
+		long start = System.nanoTime();
+		// Products read, null for deleted files. Files that cannot be parsed are left out.
+		Map<Integer, Product> products = new HashMap<>();
+		Map<Integer, ReviewsUpdate> reviews = new HashMap<>();
+		
+		for (int id : productIds) {
+			Path file = productFile(id);
+			
+			if (Files.notExists(file)) {
+				products.put(id, null);
+			} else {
+				Product product = loadProduct(file);
+				
+				if (product != null) {
+					products.put(id, product);
+					// Read whole, in case the product is new.
+					reviews.put(id, readReviews(id, true));
+				}
+			}
+		}
+		
+		for (int id : reviewIds) {
+			reviews.computeIfAbsent(id, i -> readReviews(i, false));
+		}
+		
+		// Reviews files written by the catalog itself are skipped without locking.
+		reviews.entrySet().removeIf(e -> e.getValue() == null || e.getValue().isUnchanged() && !products.containsKey(e.getKey()));
+		reviewIds.removeIf(id -> !reviews.containsKey(id));
+		
+		if (products.isEmpty() && reviewIds.isEmpty()) {
+			return;
+		}
+		
+		Map<Stripe, Set<Integer>> byStripe = new LinkedHashMap<>();
+		
+		Stream.concat(products.keySet().stream(), reviewIds.stream())
+				.forEach(id -> byStripe.computeIfAbsent(stripe(id), s -> new HashSet<>()).add(id));
+		
+		for (Map.Entry<Stripe, Set<Integer>> entry : byStripe.entrySet()) {
+			Stripe stripe = entry.getKey();
+			
+			try {
+				stripe.writeLock.lock();
+				
+				for (int id : entry.getValue()) {
+					ReviewsUpdate update = reviews.get(id);
+					boolean added = products.containsKey(id) && reloadProduct(id, products.get(id), update);
+					
+					if (!added && reviewIds.contains(id) && !update.isUnchanged()) {
+						reloadReviews(id, update);
+					}
+				}
+			} finally {
+				stripe.writeLock.unlock();
+			}
+		}
+		
+		scheduleCheckpoint();
+		metrics.record(Metrics.Operation.RELOAD, start);
+		logger.log(Level.INFO, "Reloaded " + products.size() + " product files and " + reviewIds.size() + " reviews files");
+	}
+	
+	/**
+	 * Applies a product file read again: the product is added if it is new,
+	 * its details are replaced, keeping its rating, if it exists, and it is
+	 * removed if the file was deleted. Must be called holding the write lock
+	 * of the product stripe.
+	 * @param product the product read, {@code null} if the file was deleted.
+	 * @param update the whole reviews file of the product, read along with it.
+	 * @return whether the product was added, along with its reviews.
+	 */
+	private boolean reloadProduct(int productId, Product product, ReviewsUpdate update) {
+		Stripe stripe = stripe(productId);
+		Product current = stripe.products.get(productId);
+		
+		if (product == null) {
+			if (current != null) {
+				removeProduct(current);
+			}
+			return false;
+		}
+		
+		if (product.getId() != productId) {
+			logger.log(Level.WARNING, "Product file " + productFile(productId).getFileName() + " holds product " + product.getId());
+			return false;
+		}
+		
+		if (current != null) {
+			replaceProduct(current, product.applyRating(current.getRating()));
+			return false;
+		}
+		
+		if (update == null || reviewFiles.get(productId) != update.known) {
+			// Not read, or written by the catalog since, so read holding the lock.
+			update = readReviews(productId, true);
+		}
+		
+		// Added as when the data folder is loaded, its reviews file is up to date.
+		if (update != null) {
+			reviewFiles.put(productId, update.prefix);
+		}
+		addProduct(product, lazyReviews ? NOT_LOADED : update == null ? new ReviewList() : update.reviews);
+		return true;
+	}
+	
+	/**
+	 * Applies a changed reviews file. Reviews appended to the part of the
+	 * file already read are added. Otherwise, if the file was rewritten or
+	 * reviews are loaded on demand, the file holds every review but those
+	 * posted through the catalog while they are not loaded on demand, so
+	 * reviews are counted again from the file and those posted. Must be
+	 * called holding the write lock of the product stripe.
+	 */
+	private void reloadReviews(int productId, ReviewsUpdate update) {
+		Stripe stripe = stripe(productId);
+		Product product = stripe.products.get(productId);
+		
+		// Reviews of a product not in the catalog are loaded along with it.
+		if (product == null) {
+			return;
+		}
+		
+		if (reviewFiles.get(productId) != update.known) {
+			// Written by the catalog since it was read, so read again holding the lock.
+			update = readReviews(productId, false);
+			
+			if (update == null || update.isUnchanged()) {
+				return;
+			}
+		}
+		
+		RatingHistogram histogram = stripe.ratings.get(productId);
+		
+		if (update.appended) {
+			shard(productId).products.get(product).addAll(update.reviews);
+			
+			for (Review review : update.reviews) {
+				histogram.add(review.getRating());
+			}
+		} else {
+			ReviewList posted = stripe.posted.get(productId);
+			
+			if (posted != null) {
+				update.reviews.addAll(posted);
+			}
+			histogram = new RatingHistogram(update.reviews);
+			stripe.ratings.put(productId, histogram);
+			
+			if (lazyReviews) {
+				reviewCache.invalidate(productId);
+			} else {
+				shard(productId).products.put(product, update.reviews);
+			}
+		}
+		
+		reviewFiles.put(productId, update.prefix);
+		replaceProduct(product, product.applyRating(histogram.getRating()));
+	}
+	
+	/**
+	 * Removes a product from the catalog and its indexes. Must be called
+	 * holding the write lock of the product stripe.
+	 */
+	private void removeProduct(Product product) {
+		Stripe stripe = stripe(product.getId());
+		Shard shard = shard(product.getId());
+		
+		shard.products.remove(product);
+		stripe.products.remove(product.getId());
+		stripe.ratings.remove(product.getId());
+		stripe.posted.remove(product.getId());
+		shard.discounts.remove(product);
+		stripe.index.remove(product);
+		reviewCache.invalidate(product.getId());
+		reviewFiles.remove(product.getId());
+		formatters.values().forEach(formatter -> formatter.remove(product));
+	}
+	
+	/**
+	 * Writes a snapshot of the catalog to the temp folder and deletes older
+	 * ones, along with the journal segments it includes. The catalog is
+	 * copied and the journal rotated holding the stripe read locks, so no
+	 * review can be missed, and the snapshot is written after releasing them.
+	 * Reviews loaded on demand are kept up to date in their files, so they
+	 * are left out instead of being read holding the locks.
+	 */
+	private void dumpData() {
+		long start = System.nanoTime();
+		Map<Product, List<Review>> data = new HashMap<>();
+		Map<Integer, List<Review>> posted = new HashMap<>();
+		long segment = 0;
+		
+		try {
+			lockAll(false);
+			forEachProduct(p -> {
+				data.put(p, lazyReviews ? NOT_LOADED : new ReviewList(peekReviews(p)));
+				
+				ReviewList productPosted = stripe(p.getId()).posted.get(p.getId());
+				if (productPosted != null) {
+					posted.put(p.getId(), new ReviewList(productPosted));
+				}
+			});
+			
+			if (journal != null) {
+				segment = journal.rotate();
+			}
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Error rotating journal " + e.getMessage());
+			return;
+		} finally {
+			unlockAll(false);
+		}
+		
+		try {
+			if (Files.notExists(tempFolder)) {
+				Files.createDirectory(tempFolder);
+			}
+			
+			String filename = MessageFormat.format(config.getString("temp.file"), Instant.now().toEpochMilli());
+			Path tempFile = tempFolder.resolve(filename);
+			
+			new Snapshot(data, posted, segment, !lazyReviews).write(tempFile);
+			
+			for (Path snapshot : listSnapshots()) {
+				if (!snapshot.equals(tempFile)) {
+					Files.deleteIfExists(snapshot);
+				}
+			}
+			
+			if (journal != null) {
+				journal.deleteUpTo(segment);
+			}
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Error dumping  data " + e.getMessage());
+		} finally {
+			metrics.record(Metrics.Operation.DUMP, start);
+		}
+	}
+	
+	/**
+	 * Restores the newest snapshot of the temp folder.
+	 * @return the last journal segment included in the snapshot, or -1 if
+	 * there is no snapshot or it could not be read.
+	 */
+	private long restoreData() {
+		long start = System.nanoTime();
+		
+		try {
+			List<Path> snapshots = listSnapshots();
+			
+			if (snapshots.isEmpty()) {
+				return -1;
+			}
+			
+			// Reviews loaded on demand are read from their files, which hold them all.
+			Snapshot snapshot = Snapshot.read(snapshots.get(snapshots.size() - 1), commentDictionary::intern, !lazyReviews);
+			Map<Product, List<Review>> catalog = snapshot.getProducts();
+			
+			if (lazyReviews) {
+				catalog.replaceAll((p, reviews) -> NOT_LOADED);
+			} else if (!snapshot.hasReviews()) {
+				// Written while reviews were loaded on demand, their files hold them all.
+				logger.log(Level.INFO, "Loading the reviews of " + catalog.size() + " products left out of the snapshot");
+				catalog.replaceAll((p, reviews) -> loadReviews(p));
+			}
+			
+			try {
+				lockAll(true);
+				reviewCache.clear();
+				indexProducts(catalog, snapshot.getPosted());
+			} finally {
+				unlockAll(true);
+			}
+			
+			metrics.record(Metrics.Operation.RESTORE, start);
+			return snapshot.getJournalSegment();
+		} catch (Exception e) {
+			logger.log(Level.SEVERE, "Error restoring data " + e.getMessage());
+			return -1;
+		}
+	}
+	
+	/**
+	 * @return the snapshots of the temp folder, from oldest to newest by the
+	 * time in their {@code temp.file} name.
+	 */
+	private List<Path> listSnapshots() throws IOException {
+		return new ArrayList<>(NumberedFiles.list(tempFolder, config.getString("temp.file")).values());
+	}
+	
+	/**
+	 * Adds up the discount totals of every shard, read in parallel.
+	 * @return A map storing rating number of stars and discount per rating.
+	 */
+	public Map<String, String> getDiscounts(String languageTag) {
+		long start = System.nanoTime();
+		ResourceFormatter formatter = formatters.getOrDefault(languageTag, formatters.get("en-GB"));
+		LocalDateTime now = LocalDateTime.now();
+		
+		try {
+			return Arrays.stream(shards)
+					.parallel()
+					.flatMap(shard -> shard.discounts.getTotals(now.toLocalDate(), now.toLocalTime()).entrySet().stream())
+					.collect(Collectors.groupingBy(Map.Entry::getKey, () -> new EnumMap<>(Rating.class),
+							Collectors.summingLong(Map.Entry::getValue)))
+					.entrySet()
+					.stream()
+					.collect(
+							Collectors.toMap(
+									e -> e.getKey().getStars(),
+									e -> formatter.formatMoney(e.getValue())));
+		} finally {
+			metrics.record(Metrics.Operation.DISCOUNTS, start);
+		}
+	}
+	
+	public CompletableFuture<Map<String, String>> getDiscountsAsync(String languageTag) {
+		return CompletableFuture.supplyAsync(() -> getDiscounts(languageTag), asyncExecutor);
+	}
+	
+	public Product findProduct(int productId) throws ProductManagerException {
+		long start = System.nanoTime();
+		Stripe stripe = stripe(productId);
+		
+		try {
+			stripe.readLock.lock();
+			return lookupProduct(productId);
+		} finally {
+			stripe.readLock.unlock();
+			metrics.record(Metrics.Operation.FIND, start);
+		}
+	}
+	
+	public CompletableFuture<Product> findProductAsync(int productId) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return findProduct(productId);
+			} catch (ProductManagerException e) {
+				throw new CompletionException(e);
+			}
+		}, asyncExecutor);
+	}
+	
+	/**
+	 * Must be called holding a lock of the product stripe.
+	 */
+	private Product lookupProduct(int productId) throws ProductManagerException {
+		Product product = stripe(productId).products.get(productId);
+		
+		if (product == null) {
+			throw new ProductManagerException("Product with id " + productId + " not found");
+		}
+		
+		return product;
+	}
+	
+	public List<Product> findProductsByRating(Rating rating) {
+		return concat(queryIndex(index -> index.findByRating(rating)));
+	}
+	
+	/**
+	 * @param minPrice the minimum price, included, or {@code null} for no minimum.
+	 * @param maxPrice the maximum price, included, or {@code null} for no maximum.
+	 * @return the products by ascending price, none if the minimum is above the maximum.
+	 */
+	public List<Product> findProductsByPrice(BigDecimal minPrice, BigDecimal maxPrice) {
+		return merge(queryIndex(index -> index.findByPrice(minPrice, maxPrice)), Comparator.comparingLong(Product::getPriceUnits));
+	}
+	
+	/**
+	 * Finds the products best before a date between both dates, for instance
+	 * the products expiring in the next days.
+	 * @param from the first date, included, or {@code null} for no first date.
+	 * @param to the last date, included, or {@code null} for no last date.
+	 * @return the products by ascending best before date, none if the first
+	 * date is after the last one.
+	 */
+	public List<Product> findProductsByBestBefore(LocalDate from, LocalDate to) {
+		LocalDate today = LocalDate.now();
+		
+		return merge(queryIndex(index -> index.findByBestBefore(from, to, today)),
+				Comparator.comparing(p -> p instanceof Food ? p.getBestBefore() : today));
+	}
+	
+	/**
+	 * Finds a page of the products matching a query. Candidates are taken from
+	 * the rating, price or best before index when the query has such criteria,
+	 * and only the products of the page are sorted.
+	 */
+	public ProductPage findProducts(ProductQuery query) {
+		if (query.getRatings() != null) {
+			return query.select(concat(queryIndex(index -> {
+				List<Product> candidates = new ArrayList<>();
+				query.getRatings().forEach(rating -> candidates.addAll(index.findByRating(rating)));
+				return candidates;
+			})));
+		}
+		
+		if (query.getMinPrice() != null || query.getMaxPrice() != null) {
+			return query.select(concat(queryIndex(index -> index.findByPrice(query.getMinPrice(), query.getMaxPrice()))));
+		}
+		
+		if (query.getBestBeforeFrom() != null || query.getBestBeforeTo() != null) {
+			LocalDate today = LocalDate.now();
+			
+			return query.select(concat(queryIndex(index -> index.findByBestBefore(query.getBestBeforeFrom(), query.getBestBeforeTo(), today))));
+		}
+		
+		try {
+			lockAll(false);
+			List<Product> candidates = new ArrayList<>();
+			forEachProduct(candidates::add);
+			return query.select(candidates);
+		} finally {
+			unlockAll(false);
+		}
+	}
+	
+	/**
+	 * Runs a query on the product index of each stripe, holding its read lock.
+	 * @return the products found in each stripe.
+	 */
+	private List<List<Product>> queryIndex(Function<ProductIndex, List<Product>> query) {
+		List<List<Product>> results = new ArrayList<>(stripes.length);
+		
+		for (Stripe stripe : stripes) {
+			try {
+				stripe.readLock.lock();
+				results.add(query.apply(stripe.index));
+			} finally {
+				stripe.readLock.unlock();
+			}
+		}
+		
+		return results;
+	}
+	
+	private static <T> List<T> concat(List<List<T>> lists) {
+		return lists.stream().flatMap(List::stream).collect(Collectors.toList());
+	}
+	
+	/**
+	 * @return how many reviews of the product were given each rating.
+	 */
+	public Map<Rating, Integer> getRatingDistribution(int productId) throws ProductManagerException {
+		Stripe stripe = stripe(productId);
+		
+		try {
+			stripe.readLock.lock();
+			return findRatings(productId).toMap();
+		} finally {
+			stripe.readLock.unlock();
+		}
+	}
+	
+	public int getReviewCount(int productId, Rating rating) throws ProductManagerException {
+		Stripe stripe = stripe(productId);
+		
+		try {
+			stripe.readLock.lock();
+			return findRatings(productId).getCount(rating);
+		} finally {
+			stripe.readLock.unlock();
+		}
+	}
+	
+	/**
+	 * @return the mean number of stars of the product reviews, or 0 if it has not been reviewed.
+	 */
+	public double getAverageRating(int productId) throws ProductManagerException {
+		Stripe stripe = stripe(productId);
+		
+		try {
+			stripe.readLock.lock();
+			return findRatings(productId).getMean();
+		} finally {
+			stripe.readLock.unlock();
+		}
+	}
+	
+	private RatingHistogram findRatings(int productId) throws ProductManagerException {
+		RatingHistogram histogram = stripe(productId).ratings.get(productId);
+		
+		if (histogram == null) {
+			throw new ProductManagerException("Product with id " + productId + " not found");
+		}
+		
+		if (!histogram.isLoaded()) {
+			getReviews(lookupProduct(productId));
+		}
+		
+		return histogram;
+	}
+	
+	public Product reviewProduct(int productId, Rating rating, String comments) {
+		long start = System.nanoTime();
+		Stripe stripe = stripe(productId);
+		Product product = null;
+		long sequence = 0;
+		
+		try {
+			stripe.writeLock.lock();
+			Review review = newReview(rating, comments);
+			Product current = lookupProduct(productId);
+			// Loads the reviews and their histogram if they are loaded on demand.
+			// Once the review is appended to the reviews file, the cached reviews
+			// could be evicted and loaded again with it, so they are not looked
+			// up again.
+			List<Review> reviews = getReviews(current);
+			RatingHistogram histogram = new RatingHistogram(stripe.ratings.get(productId));
+			histogram.add(review.getRating());
+			
+			sequence = logReview(current, review, histogram.getRating());
+			product = reviewProduct(current, reviews, review);
+		} catch (ProductManagerException e) {
+			logger.log(Level.INFO, e.getMessage());
+		} finally {
+			stripe.writeLock.unlock();
+		}
+		
+		if (product != null) {
+			syncJournal(sequence);
+		}
+		
+		metrics.record(Metrics.Operation.REVIEW, start);
+		return product;
+	}
+	
+	/**
+	 * @return a future completed with the reviewed product, or {@code null} if
+	 * the product does not exist, once the review is journaled.
+	 */
+	public CompletableFuture<Product> reviewProductAsync(int productId, Rating rating, String comments) {
+		return CompletableFuture.supplyAsync(() -> reviewProduct(productId, rating, comments), asyncExecutor);
+	}
+	
+	/**
+	 * Adds a review to the reviews of a product, got before it was journaled.
+	 * Must be called holding the write lock of the product stripe.
+	 */
+	private Product reviewProduct(Product product, List<Review> reviews, Review review) {
+		reviews.add(review);
+		post(product.getId(), List.of(review));
+		
+		RatingHistogram histogram = stripe(product.getId()).ratings.get(product.getId());
+		histogram.add(review.getRating());
+		Product rated = product.applyRating(histogram.getRating());
+		
+		replaceProduct(product, rated);
+		return rated;
+	}
+	
+	/**
+	 * Reviews several products at once. Reviews are grouped by product and
+	 * the products of a stripe are reviewed under one acquisition of its
+	 * lock, updating each product once with its final rating. The journal
+	 * is synced once for the whole batch.
+	 * @return the reviewed product of each request, in the same order, or
+	 * {@code null} for the requests of products that do not exist.
+	 */
+	public List<Product> reviewProducts(Collection<ReviewRequest> requests) {
+		long start = System.nanoTime();
+		List<ReviewRequest> items = new ArrayList<>(requests);
+		Product[] results = new Product[items.size()];
+		// Indexes of the requests by stripe and product, in request order.
+		Map<Stripe, Map<Integer, List<Integer>>> groups = new LinkedHashMap<>();
+		long sequence = 0;
+		
+		for (int i = 0; i < items.size(); i++) {
+			int productId = items.get(i).getProductId();
+			
+			groups.computeIfAbsent(stripe(productId), s -> new LinkedHashMap<>())
+					.computeIfAbsent(productId, id -> new ArrayList<>())
+					.add(i);
+		}
+		
+		for (Map.Entry<Stripe, Map<Integer, List<Integer>>> group : groups.entrySet()) {
+			Stripe stripe = group.getKey();
+			
+			try {
+				stripe.writeLock.lock();
+				
+				for (Map.Entry<Integer, List<Integer>> product : group.getValue().entrySet()) {
+					sequence = Math.max(sequence, reviewProduct(product.getKey(), product.getValue(), items, results));
+				}
+			} finally {
+				stripe.writeLock.unlock();
+			}
+		}
+		
+		syncJournal(sequence);
+		metrics.record(Metrics.Operation.REVIEW_BATCH, start);
+		return Arrays.asList(results);
+	}
+	
+	/**
+	 * Applies the requests of a product of a batch, storing the reviewed
+	 * product as their result. Must be called holding the write lock of the
+	 * product stripe.
+	 * @param indexes the indexes of the product requests.
+	 * @return the journal sequence number of the last review, 0 if none was written.
+	 */
+	private long reviewProduct(int productId, List<Integer> indexes, List<ReviewRequest> requests, Product[] results) {
+		Product product;
+		
+		try {
+			product = lookupProduct(productId);
+		} catch (ProductManagerException e) {
+			logger.log(Level.INFO, e.getMessage());
+			return 0;
+		}
+		
+		List<Review> reviews = getReviews(product);
+		RatingHistogram histogram = stripe(productId).ratings.get(productId);
+		List<Review> added = new ArrayList<>(indexes.size());
+		// Each review is journaled with the rating the product had after it,
+		// counted apart so the product only changes once they are persisted.
+		RatingHistogram next = new RatingHistogram(histogram);
+		List<Rating> ratings = new ArrayList<>(indexes.size());
+		
+		for (int i : indexes) {
+			Review review = newReview(requests.get(i).getRating(), requests.get(i).getComments());
+			next.add(review.getRating());
+			added.add(review);
+			ratings.add(next.getRating());
+		}
+		
+		if (lazyReviews) {
+			appendReviews(product, added);
+		}
+		
+		long sequence = 0;
+		
+		for (int i = 0; i < added.size(); i++) {
+			sequence = journalReview(productId, added.get(i), ratings.get(i));
+		}
+		
+		for (Review review : added) {
+			reviews.add(review);
+			histogram.add(review.getRating());
+		}
+		post(productId, added);
+		
+		Product rated = product.applyRating(histogram.getRating());
+		replaceProduct(product, rated);
+		
+		for (int i : indexes) {
+			results[i] = rated;
+		}
+		
+		return sequence;
+	}
+	
+	/**
+	 * Keeps the reviews posted through the catalog apart, unless reviews are
+	 * loaded on demand, as they are not in the reviews file of the product.
+	 * Must be called holding the write lock of the product stripe.
+	 */
+	private void post(int productId, List<Review> reviews) {
+		if (!lazyReviews) {
+			IntHashMap<ReviewList> posted = stripe(productId).posted;
+			ReviewList productPosted = posted.get(productId);
+			
+			if (productPosted == null) {
+				posted.put(productId, new ReviewList(reviews));
+			} else {
+				productPosted.addAll(reviews);
+			}
+		}
+	}
+	
+	/**
+	 * Replaces a product by a copy with a new rating in the catalog and its
+	 * indexes. Must be called holding the write lock of the product stripe.
+	 */
+	private void replaceProduct(Product product, Product rated) {
+		Shard shard = shard(product.getId());
+		// It's not possible to update the product in a HashMap.
+		List<Review> reviews = shard.products.remove(product);
+		
+		// Add the updated product.
+		shard.products.put(rated, reviews);
+		stripe(rated.getId()).products.put(rated.getId(), rated);
+		shard.discounts.replace(product, rated);
+		stripe(rated.getId()).index.replace(product, rated);
+	}
+	
+	/**
+	 * Prints a product report, rendered on the caller thread as it waits
+	 * for the report anyway, instead of waiting for other requests of the
+	 * same report.
+	 */
+	public void printProductReport(int productId, String languageTag, String client) {
+		long start = System.nanoTime();
+		
+		try {
+			reportPipeline.submitNow(productId, languageTag, reportFile(productId, client)).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof ProductManagerException) {
+				logger.log(Level.INFO, e.getCause().getMessage());
+			} else {
+				logger.log(Level.SEVERE, "Error printing product report " + e.getCause().getMessage(), e.getCause());
+			}
+		} finally {
+			metrics.record(Metrics.Operation.REPORT, start);
+		}
+	}
+	
+	/**
+	 * Requests a product report without waiting for it to be written. Requests
+	 * for the same product and locale close in time share the same rendering.
+	 * @return a future completed with the report file once written, or
+	 * exceptionally with a {@link ProductManagerException} if the product
+	 * does not exist or an {@link IOException} if the report cannot be written.
+	 */
+	public CompletableFuture<Path> printProductReportAsync(int productId, String languageTag, String client) {
+		long start = System.nanoTime();
+		
+		return reportPipeline.submit(productId, languageTag, reportFile(productId, client))
+				.whenComplete((file, e) -> metrics.record(Metrics.Operation.REPORT, start));
+	}
+	
+	private Path reportFile(int productId, String client) {
+		return reportsFolder.resolve(MessageFormat.format(config.getString("report.file"), productId, client));
+	}
+	
+	/**
+	 * Renders a product report without writing it to a file, for instance to
+	 * send it to a client.
+	 * @return the text of the report: the product and its reviews, one per line.
+	 */
+	public String getProductReport(int productId, String languageTag) throws ProductManagerException {
+		long start = System.nanoTime();
+		
+		try {
+			return renderProductReport(productId, languageTag);
+		} finally {
+			metrics.record(Metrics.Operation.REPORT, start);
+		}
+	}
+	
+	/**
+	 * Renders the lines of a product report as they are read from the stream,
+	 * for instance to send them to a client without holding the whole report.
+	 * @return the lines of the report, without line separators: the product
+	 * and its reviews. The stream should be closed once read.
+	 */
+	public Stream<String> getProductReportLines(int productId, String languageTag) throws ProductManagerException {
+		long start = System.nanoTime();
+		
+		try {
+			return reportLines(productId, languageTag).onClose(() -> metrics.record(Metrics.Operation.REPORT, start));
+		} catch (ProductManagerException e) {
+			metrics.record(Metrics.Operation.REPORT, start);
+			throw e;
+		}
+	}
+	
+	private String renderProductReport(int productId, String languageTag) throws ProductManagerException {
+		return reportLines(productId, languageTag)
+				.map(line -> line + System.lineSeparator())
+				.collect(Collectors.joining());
+	}
+	
+	/**
+	 * Copies a product and its reviews, which are formatted as the lines are
+	 * read from the stream.
+	 */
+	private Stream<String> reportLines(int productId, String languageTag) throws ProductManagerException {
+		ResourceFormatter formatter = formatters.getOrDefault(languageTag, formatters.get("en-GB"));
+		Stripe stripe = stripe(productId);
+		Product product;
+		List<Review> reviews;
+		
+		// Copy the product and its reviews so they are formatted without holding the lock.
+		// Review lists are kept in report order, so they are not sorted.
+		try {
+			stripe.readLock.lock();
+			product = lookupProduct(productId);
+			reviews = new ReviewList(getReviews(product));
+		} finally {
+			stripe.readLock.unlock();
+		}
+		
+		Stream<String> productLine = Stream.of(product).map(formatter::formatProduct);
+		
+		if (reviews.isEmpty()) {
+			return Stream.concat(productLine, Stream.of("no.reviews").map(formatter::getText));
+		}
+		
+		return Stream.concat(productLine, reviews.stream().map(formatter::formatReview));
+	}
+	
+	/**
+	 * Filters and sorts the products of every shard in parallel, each shard
+	 * holding its own stripe read locks, and merges the sorted products.
+	 */
+	public void printProducts(Predicate<Product> filter, Comparator<Product> sorter, String languageTag) {
+		ResourceFormatter formatter = formatters.getOrDefault(languageTag, formatters.get("en-GB"));
+		StringBuilder txt = new StringBuilder();
+		
+		List<List<Product>> sorted = Arrays.stream(shards)
+				.parallel()
+				.map(shard -> {
+					try {
+						lock(shard.stripes, false);
+						
+						return shard.products.keySet()
+						.stream()
+						.filter(filter)
+						.sorted(sorter)
+						.collect(Collectors.toList());
+					} finally {
+						unlock(shard.stripes, false);
+					}
+				})
+				.collect(Collectors.toList());
+		
+		merge(sorted, sorter).forEach(p -> txt.append(formatter.formatProduct(p) + '\n'));
+		
+		System.out.println(txt);
+	}
+	
+	/**
+	 * Merges lists sorted by the same comparator into one sorted list.
+	 */
+	private static <T> List<T> merge(List<List<T>> lists, Comparator<? super T> comparator) {
+		List<T> merged = new ArrayList<>(lists.stream().mapToInt(List::size).sum());
+		// The next element of each list that has any left, and the rest of the list.
+		PriorityQueue<Map.Entry<T, Iterator<T>>> heads = new PriorityQueue<>(Math.max(1, lists.size()),
+				Map.Entry.comparingByKey(comparator));
+		
+		for (List<T> list : lists) {
+			Iterator<T> iterator = list.iterator();
+			
+			if (iterator.hasNext()) {
+				heads.add(new AbstractMap.SimpleEntry<>(iterator.next(), iterator));
+			}
+		}
+		
+		while (!heads.isEmpty()) {
+			Map.Entry<T, Iterator<T>> head = heads.poll();
+			merged.add(head.getKey());
+			
+			if (head.getValue().hasNext()) {
+				heads.add(new AbstractMap.SimpleEntry<>(head.getValue().next(), head.getValue()));
+			}
+		}
+		
+		return merged;
+	}
+	
+	/**
+	 * Visits every product of the catalog, shard by shard, so it only sees a
+	 * consistent catalog holding every stripe lock.
+	 */
+	private void forEachProduct(Consumer<Product> action) {
+		for (Shard shard : shards) {
+			shard.products.keySet().forEach(action);
+		}
+	}
+	
+	/**
+	 * The instance is created once {@code ProductManager} is initialized, otherwise
+	 * loader threads running its lambdas would wait for the class initialization
+	 * that is waiting for them.
+	 */
+	private static class InstanceHolder {
+		private static final ProductManager pm = new ProductManager();
+		
+		static {
+			pm.registerMBean();
+		}
+	}
+	
+	/**
+	 * Reads the metrics when they are requested, each attribute on its own.
+	 */
+	private class Management implements ProductManagerMXBean {
+		@Override
+		public int getProductCount() {
+			return Arrays.stream(shards).mapToInt(shard -> shard.products.size()).sum();
+		}
+		
+		@Override
+		public long getReviewCount() {
+			return countReviews();
+		}
+		
+		@Override
+		public long getParseErrorCount() {
+			return metrics.getParseErrors();
+		}
+		
+		@Override
+		public long getLockCount() {
+			return metrics.getLockCount();
+		}
+		
+		@Override
+		public long getLockWaitNanos() {
+			return metrics.getLockWaitNanos();
+		}
+		
+		@Override
+		public long getLockHoldNanos() {
+			return metrics.getLockHoldNanos();
+		}
+		
+		@Override
+		public Map<String, OperationStats> getOperations() {
+			return metrics.getOperations();
+		}
+		
+		@Override
+		public CacheStats getReviewCacheStats() {
+			return reviewCache.getStats();
+		}
+		
+		@Override
+		public DictionaryStats getCommentDictionaryStats() {
+			return commentDictionary.getStats();
+		}
+	}
+	
+	/**
+	 * A slice of the catalog guarded by its own lock, so products in
+	 * different stripes can be read and written in parallel.
+	 */
+	private static class Stripe {
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		private final Lock writeLock;
+		private final Lock readLock;
+		private final IntHashMap<Product> products = new IntHashMap<>();
+		private final IntHashMap<RatingHistogram> ratings = new IntHashMap<>();
+		// Products of the stripe by rating, price and best before date.
+		private final ProductIndex index = new ProductIndex();
+		// Reviews posted through the catalog, also in the catalog reviews, when
+		// they are not loaded on demand, so reloading a reviews file keeps them.
+		private final IntHashMap<ReviewList> posted = new IntHashMap<>();
+		
+		private Stripe(Metrics metrics) {
+			writeLock = TimedLock.writeLock(lock, metrics);
+			readLock = TimedLock.readLock(lock, metrics);
+		}
+	}
+	
+	/**
+	 * The reviews read from a reviews file, before locking the stripe of the
+	 * product to apply them.
+	 */
+	private static class ReviewsUpdate {
+		// The part of the file known to the catalog when it was read, null if none.
+		private final FilePrefix known;
+		// The whole file as read.
+		private final FilePrefix prefix;
+		// Whether the reviews are only those appended to the known part.
+		private final boolean appended;
+		private final List<Review> reviews;
+		
+		private ReviewsUpdate(FilePrefix known, FilePrefix prefix, boolean appended, List<Review> reviews) {
+			this.known = known;
+			this.prefix = prefix;
+			this.appended = appended;
+			this.reviews = reviews;
+		}
+		
+		/**
+		 * @return whether the file is still the part known to the catalog.
+		 */
+		private boolean isUnchanged() {
+			return prefix.equals(known);
+		}
+	}
+	
+	/**
+	 * A partition of the catalog by product id, with its own products and
+	 * discount totals, guarded by its own stripes. Catalog wide operations
+	 * run on every shard in parallel and merge their results.
+	 */
+	private static class Shard {
+		private final Map<Product, List<Review>> products = new ConcurrentHashMap<>();
+		private final DiscountIndex discounts = new DiscountIndex();
+		private final Stripe[] stripes;
+		
+		/**
+		 * @param index the index of the shard.
+		 * @param count the number of shards, a power of two.
+		 * @param stripes every stripe of the catalog, the shard takes those
+		 * in the range of its index, by ascending index.
+		 */
+		private Shard(int index, int count, Stripe[] stripes) {
+			this.stripes = new Stripe[stripes.length / count];
+			
+			for (int i = 0; i < this.stripes.length; i++) {
+				this.stripes[i] = stripes[index * this.stripes.length + i];
+			}
+		}
+	}
+	
+	/**
+	 * Formats products and reviews in a locale, caching the rendered text in
+	 * bounded caches.
+	 * Cached products are only reused while they are the same instance, so a
+	 * rating change, which creates a new product, invalidates its text.
+	 */
+	private static class ResourceFormatter {
+		private final ResourceBundle resources;
+		private final DateTimeFormatter dateFormat;
+		// NumberFormat is not thread safe and formatters are shared by all threads.
+		private final ThreadLocal<NumberFormat> moneyFormat;
+		private final LruCache<Integer, RenderedProduct> renderedProducts;
+		private final LruCache<Review, String> renderedReviews;
+		
+		/**
+		 * @param cacheSize maximum number of products and of reviews whose text is cached.
+		 */
+		private ResourceFormatter(Locale locale, int cacheSize) {
+			resources = ResourceBundle.getBundle("ora.demo.data.resources", locale);
 			dateFormat = DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT).localizedBy(locale);
-			moneyFormat = NumberFormat.getCurrencyInstance(locale);
+			moneyFormat = ThreadLocal.withInitial(() -> NumberFormat.getCurrencyInstance(locale));
+			renderedProducts = new LruCache<>(cacheSize);
+			renderedReviews = new LruCache<>(cacheSize);
 		}
 		
 		private String formatProduct(Product product) {
-			return MessageFormat.format(resources.getString("product"),
-					product.getName(),
-					moneyFormat.format(product.getPrice()),
-					product.getRating().getStars(),
-					dateFormat.format(product.getBestBefore()));
+			// Products without a best before date use the current day.
+			LocalDate bestBefore = product.getBestBefore();
+			RenderedProduct rendered = renderedProducts.get(product.getId());
+			
+			if (rendered == null || rendered.product != product || !rendered.bestBefore.equals(bestBefore)) {
+				rendered = new RenderedProduct(product, bestBefore, MessageFormat.format(resources.getString("product"),
+						product.getName(),
+						moneyFormat.get().format(product.getPrice()),
+						product.getRating().getStars(),
+						dateFormat.format(bestBefore)));
+				renderedProducts.put(product.getId(), rendered);
+			}
+			
+			return rendered.text;
 		}
 		
+		// Reviews are immutable values, created on demand by the review lists,
+		// so they are cached by value: equal reviews share their text.
 		private String formatReview(Review review) {
-			return MessageFormat.format(resources.getString("review"),
-					review.getRating().getStars(),
-					review.getComments());
+			String text = renderedReviews.get(review);
+			
+			if (text == null) {
+				text = MessageFormat.format(resources.getString("review"),
+						review.getRating().getStars(),
+						review.getComments());
+				renderedReviews.put(review, text);
+			}
+			
+			return text;
+		}
+		
+		private String formatMoney(long units) {
+			return moneyFormat.get().format(Money.toBigDecimal(units));
+		}
+		
+		private void remove(Product product) {
+			renderedProducts.remove(product.getId());
 		}
 		
 		private String getText(String key) {
 			return resources.getString(key);
 		}
 	}
+	
+	private static class RenderedProduct {
+		private final Product product;
+		private final LocalDate bestBefore;
+		private final String text;
+		
+		private RenderedProduct(Product product, LocalDate bestBefore, String text) {
+			this.product = product;
+			this.bestBefore = bestBefore;
+			this.text = text;
+		}
+	}
 }
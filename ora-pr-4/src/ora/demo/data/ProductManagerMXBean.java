@@ -0,0 +1,64 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link ProductManager} instance, registered
+ * as {@code ora.demo.data:type=ProductManager}.
+ */
+public interface ProductManagerMXBean {
+	
+	int getProductCount();
+	
+	/**
+	 * @return the number of reviews counted in the rating of the products.
+	 */
+	long getReviewCount();
+	
+	/**
+	 * @return the number of product and review lines that could not be parsed.
+	 */
+	long getParseErrorCount();
+	
+	/**
+	 * @return the number of stripe lock acquisitions.
+	 */
+	long getLockCount();
+	
+	long getLockWaitNanos();
+	
+	/**
+	 * @return the time stripe write locks have been held.
+	 */
+	long getLockHoldNanos();
+	
+	/**
+	 * @return the statistics of each operation by name.
+	 */
+	Map<String, OperationStats> getOperations();
+	
+	CacheStats getReviewCacheStats();
+	
+	/**
+	 * @return the statistics of the dictionary the review comments are
+	 * deduplicated through.
+	 */
+	DictionaryStats getCommentDictionaryStats();
+}
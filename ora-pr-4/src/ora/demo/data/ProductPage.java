@@ -0,0 +1,53 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code ProductPage} is a page of the products found by a {@link ProductQuery}.
+ */
+public final class ProductPage {
+	private final List<Product> products;
+	private final ProductQuery next;
+	
+	/**
+	 * @param products
+	 * @param next
+	 */
+	ProductPage(List<Product> products, ProductQuery next) {
+		this.products = Collections.unmodifiableList(products);
+		this.next = next;
+	}
+	
+	public List<Product> getProducts() {
+		return products;
+	}
+	
+	public boolean hasNext() {
+		return next != null;
+	}
+	
+	/**
+	 * @return the query of the next page, or {@code null} if this is the last one.
+	 */
+	public ProductQuery getNext() {
+		return next;
+	}
+}
@@ -0,0 +1,237 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * {@code ProductQuery} describes which products to find, in which order
+ * and how many of them, to be run by {@link ProductManager#findProducts}.
+ * <br>
+ * Queries are immutable, each criteria method returns a new query. Results
+ * are returned in pages: the next page starts after the last product of the
+ * previous one, so pages stay consistent while products are being added.
+ */
+public final class ProductQuery {
+	
+	public enum Type {
+		FOOD, DRINK;
+		
+		private boolean matches(Product product) {
+			return this == FOOD ? product instanceof Food : product instanceof Drink;
+		}
+	}
+	
+	public enum Sort {
+		ID(Product::getId),
+		NAME(Product::getName),
+		PRICE(Product::getPriceUnits),
+		RATING(Product::getRating),
+		BEST_BEFORE(Product::getBestBefore);
+		
+		private final Comparator<Product> comparator;
+		
+		private <T extends Comparable<? super T>> Sort(Function<Product, T> key) {
+			this.comparator = Comparator.comparing(key);
+		}
+	}
+	
+	public static final int DEFAULT_LIMIT = 20;
+	
+	private Set<Rating> ratings;
+	private BigDecimal minPrice;
+	private BigDecimal maxPrice;
+	private long minPriceUnits = Long.MIN_VALUE;
+	private long maxPriceUnits = Long.MAX_VALUE;
+	private Type type;
+	private LocalDate bestBeforeFrom;
+	private LocalDate bestBeforeTo;
+	private Sort sort = Sort.ID;
+	private boolean descending;
+	private int limit = DEFAULT_LIMIT;
+	private Product after;
+	
+	/**
+	 * Creates a query of every product by id, limited to {@link #DEFAULT_LIMIT}
+	 * products per page.
+	 */
+	public ProductQuery() {
+	}
+	
+	private ProductQuery(ProductQuery other) {
+		this.ratings = other.ratings;
+		this.minPrice = other.minPrice;
+		this.maxPrice = other.maxPrice;
+		this.minPriceUnits = other.minPriceUnits;
+		this.maxPriceUnits = other.maxPriceUnits;
+		this.type = other.type;
+		this.bestBeforeFrom = other.bestBeforeFrom;
+		this.bestBeforeTo = other.bestBeforeTo;
+		this.sort = other.sort;
+		this.descending = other.descending;
+		this.limit = other.limit;
+		this.after = other.after;
+	}
+	
+	public ProductQuery ratings(Rating rating, Rating... others) {
+		ProductQuery query = new ProductQuery(this);
+		query.ratings = EnumSet.of(rating, others);
+		return query;
+	}
+	
+	public ProductQuery ratingAtLeast(Rating rating) {
+		ProductQuery query = new ProductQuery(this);
+		query.ratings = EnumSet.range(rating, Rating.FIVE_STAR);
+		return query;
+	}
+	
+	/**
+	 * @param minPrice the minimum price, included, or {@code null} for no minimum.
+	 * @param maxPrice the maximum price, included, or {@code null} for no maximum.
+	 */
+	public ProductQuery priceBetween(BigDecimal minPrice, BigDecimal maxPrice) {
+		ProductQuery query = new ProductQuery(this);
+		query.minPrice = minPrice;
+		query.maxPrice = maxPrice;
+		query.minPriceUnits = minPrice == null ? Long.MIN_VALUE : Money.valueOf(minPrice, RoundingMode.CEILING);
+		query.maxPriceUnits = maxPrice == null ? Long.MAX_VALUE : Money.valueOf(maxPrice, RoundingMode.FLOOR);
+		return query;
+	}
+	
+	public ProductQuery type(Type type) {
+		ProductQuery query = new ProductQuery(this);
+		query.type = type;
+		return query;
+	}
+	
+	/**
+	 * @param from the first best before date, included, or {@code null} for no first date.
+	 * @param to the last best before date, included, or {@code null} for no last date.
+	 */
+	public ProductQuery bestBeforeBetween(LocalDate from, LocalDate to) {
+		ProductQuery query = new ProductQuery(this);
+		query.bestBeforeFrom = from;
+		query.bestBeforeTo = to;
+		return query;
+	}
+	
+	/**
+	 * Products with the same sort key are sorted by id.
+	 */
+	public ProductQuery sortBy(Sort sort, boolean descending) {
+		ProductQuery query = new ProductQuery(this);
+		query.sort = sort;
+		query.descending = descending;
+		query.after = null;
+		return query;
+	}
+	
+	/**
+	 * @param limit the maximum number of products of a page.
+	 */
+	public ProductQuery limit(int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Invalid limit " + limit);
+		}
+		
+		ProductQuery query = new ProductQuery(this);
+		query.limit = limit;
+		return query;
+	}
+	
+	/**
+	 * @param product the last product of the previous page.
+	 */
+	public ProductQuery after(Product product) {
+		ProductQuery query = new ProductQuery(this);
+		query.after = product;
+		return query;
+	}
+	
+	Set<Rating> getRatings() {
+		return ratings;
+	}
+	
+	BigDecimal getMinPrice() {
+		return minPrice;
+	}
+	
+	BigDecimal getMaxPrice() {
+		return maxPrice;
+	}
+	
+	LocalDate getBestBeforeFrom() {
+		return bestBeforeFrom;
+	}
+	
+	LocalDate getBestBeforeTo() {
+		return bestBeforeTo;
+	}
+	
+	boolean matches(Product product) {
+		return (ratings == null || ratings.contains(product.getRating()))
+				&& product.getPriceUnits() >= minPriceUnits
+				&& product.getPriceUnits() <= maxPriceUnits
+				&& (type == null || type.matches(product))
+				&& (bestBeforeFrom == null || !product.getBestBefore().isBefore(bestBeforeFrom))
+				&& (bestBeforeTo == null || !product.getBestBefore().isAfter(bestBeforeTo));
+	}
+	
+	/**
+	 * Selects the page of products matching the query. Only the products of
+	 * the page are kept and sorted, in a heap bounded by the limit.
+	 * @param candidates products that may match the query, at least every
+	 * product that does.
+	 */
+	ProductPage select(Iterable<Product> candidates) {
+		Comparator<Product> order = (descending ? sort.comparator.reversed() : sort.comparator)
+				.thenComparingInt(Product::getId);
+		// The heap keeps one extra product to know whether there is a next page.
+		PriorityQueue<Product> top = new PriorityQueue<>(Math.min(limit, 1024) + 1, order.reversed());
+		
+		for (Product product : candidates) {
+			if (matches(product) && (after == null || order.compare(product, after) > 0)) {
+				top.offer(product);
+				
+				// Not limit + 1, which overflows for the largest limit.
+				if (top.size() - 1 > limit) {
+					top.poll();
+				}
+			}
+		}
+		
+		List<Product> products = new ArrayList<>(top);
+		products.sort(order);
+		
+		if (products.size() > limit) {
+			products.remove(limit);
+			return new ProductPage(products, after(products.get(limit - 1)));
+		}
+		
+		return new ProductPage(products, null);
+	}
+}
@@ -0,0 +1,112 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * {@code RatingHistogram} keeps how many reviews of a product were given
+ * each {@link Rating}, so the product rating can be derived in constant
+ * time instead of averaging every review again.
+ * <br>
+ * This class is not thread safe.
+ */
+final class RatingHistogram {
+	private static final Rating[] RATINGS = Rating.values();
+	
+	private final int[] counts = new int[RATINGS.length];
+	private int total;
+	private long sum;
+	private volatile boolean loaded;
+	
+	/**
+	 * Creates a histogram whose reviews are not loaded yet.
+	 * @see #load(Iterable)
+	 */
+	RatingHistogram() {
+	}
+	
+	RatingHistogram(Iterable<Review> reviews) {
+		load(reviews);
+	}
+	
+	/**
+	 * Copies the counts of a loaded histogram.
+	 */
+	RatingHistogram(RatingHistogram other) {
+		System.arraycopy(other.counts, 0, counts, 0, counts.length);
+		total = other.total;
+		sum = other.sum;
+		loaded = other.loaded;
+	}
+	
+	/**
+	 * Counts the reviews of a product the first time they are loaded.
+	 * Later calls are ignored, as the histogram has been kept up to date.
+	 */
+	synchronized void load(Iterable<Review> reviews) {
+		if (!loaded) {
+			reviews.forEach(r -> add(r.getRating()));
+			loaded = true;
+		}
+	}
+	
+	boolean isLoaded() {
+		return loaded;
+	}
+	
+	void add(Rating rating) {
+		counts[rating.ordinal()]++;
+		total++;
+		sum += rating.ordinal();
+	}
+	
+	int getCount(Rating rating) {
+		return counts[rating.ordinal()];
+	}
+	
+	int getTotal() {
+		return total;
+	}
+	
+	/**
+	 * @return the mean number of stars of all reviews, or 0 if there are none.
+	 */
+	double getMean() {
+		return total == 0 ? 0 : (double) sum / total;
+	}
+	
+	/**
+	 * @return the mean rounded to the nearest {@link Rating}.
+	 */
+	Rating getRating() {
+		return Rateable.convert((int) Math.round(getMean()));
+	}
+	
+	Map<Rating, Integer> toMap() {
+		Map<Rating, Integer> map = new EnumMap<>(Rating.class);
+		
+		for (Rating rating : RATINGS) {
+			map.put(rating, counts[rating.ordinal()]);
+		}
+		
+		return Collections.unmodifiableMap(map);
+	}
+}
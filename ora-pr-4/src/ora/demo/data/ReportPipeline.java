@@ -0,0 +1,351 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@code ReportPipeline} generates product reports asynchronously.
+ * <br>
+ * Requests for the same product and locale received within the coalescing
+ * window are rendered once, on a bounded pool of render threads. Requests
+ * are rejected, completing their future exceptionally, when its queue is
+ * full or the pipeline is closed. Rendered reports are queued to a single
+ * writer thread, which writes them to their files in batches: a file
+ * requested several times in a batch is written once, with its latest
+ * report, and a report is encoded once for all of its files.
+ */
+final class ReportPipeline {
+	
+	/**
+	 * Renders the text of a product report.
+	 */
+	@FunctionalInterface
+	interface Renderer {
+		String render(int productId, String languageTag) throws ProductManagerException;
+	}
+	
+	private static final Logger logger = Logger.getLogger(ReportPipeline.class.getName());
+	
+	private final Renderer renderer;
+	private final ThreadPoolExecutor renderExecutor;
+	private final long coalesceMillis;
+	private final int writeBatch;
+	private final Map<Key, Batch> pending = new ConcurrentHashMap<>();
+	private final BlockingQueue<Write> writes;
+	private final Thread writer;
+	private volatile boolean closed;
+	
+	/**
+	 * @param renderer renders the report of a product in a locale.
+	 * @param renderThreads number of render threads.
+	 * @param queueSize maximum number of renders and of writes waiting.
+	 * @param coalesceMillis time a request waits for others of the same report.
+	 * @param writeBatch maximum number of reports written in a batch.
+	 */
+	ReportPipeline(Renderer renderer, int renderThreads, int queueSize, long coalesceMillis, int writeBatch) {
+		this.renderer = renderer;
+		this.coalesceMillis = coalesceMillis;
+		this.writeBatch = writeBatch;
+		this.writes = new ArrayBlockingQueue<>(queueSize);
+		this.renderExecutor = new ThreadPoolExecutor(renderThreads, renderThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize), daemonThreads("report-render"));
+		
+		writer = daemonThreads("report-writer").newThread(this::writeReports);
+		writer.start();
+	}
+	
+	/**
+	 * Stops the render and writer threads. Pending reports are not written,
+	 * their futures are completed exceptionally.
+	 */
+	void close() {
+		closed = true;
+		RejectedExecutionException e = new RejectedExecutionException("Report pipeline closed");
+		
+		for (Runnable task : renderExecutor.shutdownNow()) {
+			((Render) task).reject(e);
+		}
+		rejectPending();
+		writer.interrupt();
+		rejectWrites();
+	}
+	
+	/**
+	 * Completes exceptionally the batches still waiting for other requests
+	 * once the pipeline is closed, instead of when their wait is over.
+	 */
+	private void rejectPending() {
+		RejectedExecutionException e = new RejectedExecutionException("Report pipeline closed");
+		
+		pending.forEach((key, batch) -> {
+			// Once removed no request can join the batch.
+			if (pending.remove(key, batch)) {
+				batch.requests.forEach(request -> request.report.completeExceptionally(e));
+			}
+		});
+	}
+	
+	/**
+	 * Completes exceptionally the reports queued to be written once the
+	 * pipeline is closed, as the writer may have stopped already.
+	 */
+	private void rejectWrites() {
+		List<Write> unwritten = new ArrayList<>();
+		writes.drainTo(unwritten);
+		unwritten.forEach(write -> write.report.completeExceptionally(new RejectedExecutionException("Report pipeline closed")));
+	}
+	
+	/**
+	 * Requests a report of a product.
+	 * @param file the report file.
+	 * @return a future completed with the file once written, or exceptionally
+	 * with a {@link ProductManagerException} if the product does not exist or
+	 * an {@link IOException} if the file cannot be written.
+	 */
+	CompletableFuture<Path> submit(int productId, String languageTag, Path file) {
+		CompletableFuture<Path> report = new CompletableFuture<>();
+		Key key = new Key(productId, languageTag);
+		
+		if (closed) {
+			report.completeExceptionally(new RejectedExecutionException("Report pipeline closed"));
+			return report;
+		}
+		
+		Batch[] created = new Batch[1];
+		
+		pending.compute(key, (k, batch) -> {
+			if (batch == null) {
+				batch = created[0] = new Batch();
+			}
+			
+			batch.requests.add(new Write(file, null, report));
+			return batch;
+		});
+		
+		// Closed while joining a batch, which close may have missed.
+		if (closed) {
+			rejectPending();
+		} else if (created[0] != null) {
+			Render render = new Render(key, created[0]);
+			
+			if (coalesceMillis > 0) {
+				// The delay thread is shared by the whole runtime, it only hands the render over.
+				CompletableFuture.delayedExecutor(coalesceMillis, TimeUnit.MILLISECONDS).execute(() -> schedule(render));
+			} else {
+				schedule(render);
+			}
+		}
+		
+		return report;
+	}
+	
+	/**
+	 * Renders a report on the caller thread, without waiting for other
+	 * requests of the same report, and queues it to be written.
+	 * @return a future completed as those of {@link #submit}.
+	 */
+	CompletableFuture<Path> submitNow(int productId, String languageTag, Path file) {
+		CompletableFuture<Path> report = new CompletableFuture<>();
+		
+		if (closed) {
+			report.completeExceptionally(new RejectedExecutionException("Report pipeline closed"));
+			return report;
+		}
+		
+		Batch batch = new Batch();
+		batch.requests.add(new Write(file, null, report));
+		render(new Key(productId, languageTag), batch);
+		return report;
+	}
+	
+	private void schedule(Render render) {
+		try {
+			renderExecutor.execute(render);
+		} catch (RejectedExecutionException e) {
+			render.reject(e);
+		}
+	}
+	
+	private void render(Key key, Batch batch) {
+		try {
+			String text = renderer.render(key.productId, key.languageTag);
+			
+			for (Write request : batch.requests) {
+				writes.put(new Write(request.file, text, request.report));
+			}
+			
+			// Closed while rendering, the writer may have stopped before the reports were queued.
+			if (closed) {
+				rejectWrites();
+			}
+		} catch (ProductManagerException | RuntimeException e) {
+			batch.requests.forEach(request -> request.report.completeExceptionally(e));
+		} catch (InterruptedException e) {
+			batch.requests.forEach(request -> request.report.completeExceptionally(e));
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void writeReports() {
+		List<Write> batch = new ArrayList<>(writeBatch);
+		
+		try {
+			while (true) {
+				batch.add(writes.take());
+				writes.drainTo(batch, writeBatch - 1);
+				write(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			if (!closed) {
+				logger.log(Level.WARNING, "Report writer interrupted");
+			}
+			batch.forEach(write -> write.report.completeExceptionally(e));
+		} finally {
+			rejectWrites();
+		}
+	}
+	
+	/**
+	 * Writes each file of a batch once, with the latest report requested for
+	 * it, completing every request of the file.
+	 */
+	private static void write(List<Write> batch) {
+		Map<Path, List<Write>> byFile = new LinkedHashMap<>();
+		// Reports rendered once share their text, encoded once for all of their files.
+		Map<String, byte[]> encoded = new IdentityHashMap<>();
+		
+		for (Write write : batch) {
+			byFile.computeIfAbsent(write.file, file -> new ArrayList<>()).add(write);
+		}
+		
+		for (Map.Entry<Path, List<Write>> file : byFile.entrySet()) {
+			List<Write> requests = file.getValue();
+			String text = requests.get(requests.size() - 1).text;
+			
+			// A failed write must not stop the writer, later reports would never complete.
+			try {
+				Files.write(file.getKey(), encoded.computeIfAbsent(text, t -> t.getBytes(StandardCharsets.UTF_8)));
+				requests.forEach(write -> write.report.complete(file.getKey()));
+			} catch (IOException | RuntimeException e) {
+				requests.forEach(write -> write.report.completeExceptionally(e));
+			}
+		}
+	}
+	
+	private static ThreadFactory daemonThreads(String name) {
+		AtomicInteger count = new AtomicInteger();
+		
+		return task -> {
+			Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+	
+	private static final class Key {
+		private final int productId;
+		private final String languageTag;
+		
+		private Key(int productId, String languageTag) {
+			this.productId = productId;
+			this.languageTag = languageTag;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(productId, languageTag);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return productId == other.productId && Objects.equals(languageTag, other.languageTag);
+		}
+	}
+	
+	/**
+	 * Renders the requests of a batch once they can no longer be joined.
+	 */
+	private final class Render implements Runnable {
+		private final Key key;
+		private final Batch batch;
+		
+		private Render(Key key, Batch batch) {
+			this.key = key;
+			this.batch = batch;
+		}
+		
+		@Override
+		public void run() {
+			// Once removed no request can join the batch.
+			pending.remove(key, batch);
+			render(key, batch);
+		}
+		
+		private void reject(RejectedExecutionException e) {
+			pending.remove(key, batch);
+			batch.requests.forEach(request -> request.report.completeExceptionally(e));
+		}
+	}
+	
+	/**
+	 * Requests waiting for the same report. Only modified while it is in the
+	 * pending map, under the map lock of its key.
+	 */
+	private static final class Batch {
+		private final List<Write> requests = new ArrayList<>();
+	}
+	
+	private static final class Write {
+		private final Path file;
+		private final String text;
+		private final CompletableFuture<Path> report;
+		
+		private Write(Path file, String text, CompletableFuture<Path> report) {
+			this.file = file;
+			this.text = text;
+			this.report = report;
+		}
+	}
+}
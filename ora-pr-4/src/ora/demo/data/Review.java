@@ -17,6 +17,8 @@
 
 package ora.demo.data;
 
+import java.util.Objects;
+
 public class Review implements Comparable<Review> {
 	private Rating rating;
 	private String comments;
@@ -50,6 +52,21 @@ public class Review implements Comparable<Review> {
 		return String.format("Review [rating=%s, comments=%s]", rating, comments);
 	}
 	
+	@Override
+	public int hashCode() {
+		return 31 * rating.hashCode() + Objects.hashCode(comments);
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Review))
+			return false;
+		Review other = (Review) obj;
+		return rating == other.rating && Objects.equals(comments, other.comments);
+	}
+	
 	@Override
 	public int compareTo(Review other) {
 		return other.rating.ordinal() - this.rating.ordinal();
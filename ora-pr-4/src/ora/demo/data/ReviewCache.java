@@ -0,0 +1,104 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * {@code ReviewCache} holds the review lists of the most recently used
+ * products, up to a maximum number of products, evicting the least
+ * recently used one when it is full.
+ * <br>
+ * Review lists are loaded outside the cache lock, so a slow file never
+ * blocks hits on other products.
+ */
+final class ReviewCache {
+	private final int maxSize;
+	private final Map<Integer, List<Review>> entries;
+	private long hits;
+	private long misses;
+	private long evictions;
+	
+	/**
+	 * @param maxSize maximum number of products whose reviews are cached.
+	 */
+	ReviewCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, List<Review>> eldest) {
+				if (size() > ReviewCache.this.maxSize) {
+					evictions++;
+					return true;
+				}
+				
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Gets the reviews of a product, loading them on a miss.
+	 * @param productId the product id.
+	 * @param loader function loading the reviews of a product id.
+	 * @return the cached reviews of the product.
+	 */
+	List<Review> get(int productId, IntFunction<List<Review>> loader) {
+		synchronized (this) {
+			List<Review> reviews = entries.get(productId);
+			
+			if (reviews != null) {
+				hits++;
+				return reviews;
+			}
+			misses++;
+		}
+		
+		List<Review> loaded = loader.apply(productId);
+		
+		synchronized (this) {
+			List<Review> reviews = entries.putIfAbsent(productId, loaded);
+			return reviews != null ? reviews : loaded;
+		}
+	}
+	
+	/**
+	 * @return the cached reviews of a product, or {@code null} if they are
+	 * not cached. Statistics are not affected.
+	 */
+	synchronized List<Review> peek(int productId) {
+		return entries.get(productId);
+	}
+	
+	synchronized void invalidate(int productId) {
+		entries.remove(productId);
+	}
+	
+	synchronized void clear() {
+		entries.clear();
+	}
+	
+	synchronized CacheStats getStats() {
+		return new CacheStats(hits, misses, evictions, entries.size(), maxSize);
+	}
+}
@@ -0,0 +1,155 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * {@code ReviewList} stores the reviews of a product bucketed by
+ * {@link Rating}: one array of comments per rating, so the rating of each
+ * review is implied by its bucket and no {@link Review} object is kept.
+ * <br>
+ * The list is always in report order, from the best rating to the worst
+ * and by insertion within a rating, the same order {@link Review#compareTo}
+ * gives, so reviews never need sorting. It is a {@link java.util.List} so
+ * it can stand for the reviews of a product anywhere, but it departs from
+ * the {@code List} contract:
+ * <ul>
+ * <li>{@link #add(Review)} inserts at the end of the bucket of the review
+ * rating rather than at the end of the list, and adding or setting at an
+ * index throws {@link UnsupportedOperationException}.</li>
+ * <li>Reviews cannot be removed one by one: {@code remove}, {@code removeIf},
+ * {@code retainAll} and {@link Iterator#remove} throw
+ * {@link UnsupportedOperationException} once they would remove a review,
+ * only {@link #clear()} empties the list.</li>
+ * <li>Each {@link #get(int)} and each step of an iterator creates a new
+ * {@link Review}, equal to, but not the same as, the one added.</li>
+ * </ul>
+ * This class is not thread safe.
+ */
+final class ReviewList extends AbstractList<Review> {
+	private static final Rating[] RATINGS = Rating.values();
+	private static final String[] EMPTY = {};
+	
+	private final String[][] comments = new String[RATINGS.length][];
+	private final int[] counts = new int[RATINGS.length];
+	private int size;
+	
+	ReviewList() {
+		Arrays.fill(comments, EMPTY);
+	}
+	
+	ReviewList(Collection<? extends Review> reviews) {
+		if (reviews instanceof ReviewList) {
+			ReviewList other = (ReviewList) reviews;
+			
+			for (int i = 0; i < RATINGS.length; i++) {
+				comments[i] = other.counts[i] == 0 ? EMPTY : Arrays.copyOf(other.comments[i], other.counts[i]);
+				counts[i] = other.counts[i];
+			}
+			size = other.size;
+		} else {
+			Arrays.fill(comments, EMPTY);
+			addAll(reviews);
+		}
+	}
+	
+	/**
+	 * Adds a review after the reviews with the same rating.
+	 * @return {@code true}
+	 */
+	@Override
+	public boolean add(Review review) {
+		int rating = review.getRating().ordinal();
+		String[] bucket = comments[rating];
+		
+		if (counts[rating] == bucket.length) {
+			bucket = comments[rating] = Arrays.copyOf(bucket, Math.max(4, bucket.length * 2));
+		}
+		
+		bucket[counts[rating]++] = review.getComments();
+		size++;
+		modCount++;
+		return true;
+	}
+	
+	@Override
+	public Review get(int index) {
+		Objects.checkIndex(index, size);
+		
+		for (int rating = RATINGS.length - 1; ; rating--) {
+			if (index < counts[rating]) {
+				return new Review(RATINGS[rating], comments[rating][index]);
+			}
+			index -= counts[rating];
+		}
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public void clear() {
+		Arrays.fill(comments, EMPTY);
+		Arrays.fill(counts, 0);
+		size = 0;
+		modCount++;
+	}
+	
+	@Override
+	public Iterator<Review> iterator() {
+		return new Iterator<Review>() {
+			private final int expectedModCount = modCount;
+			private int rating = RATINGS.length - 1;
+			private int next;
+			private int remaining = size;
+			
+			@Override
+			public boolean hasNext() {
+				return remaining > 0;
+			}
+			
+			@Override
+			public Review next() {
+				if (modCount != expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				
+				if (remaining == 0) {
+					throw new NoSuchElementException();
+				}
+				
+				while (next == counts[rating]) {
+					rating--;
+					next = 0;
+				}
+				
+				remaining--;
+				return new Review(RATINGS[rating], comments[rating][next++]);
+			}
+		};
+	}
+}
@@ -0,0 +1,61 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.Objects;
+
+/**
+ * {@code ReviewRequest} is a review of a product submitted in a batch to
+ * {@link ProductManager#reviewProducts}.
+ */
+public final class ReviewRequest {
+	private final int productId;
+	private final Rating rating;
+	private final String comments;
+	
+	/**
+	 * Requests are checked when created, as a batch fails once some of its
+	 * stripes are already reviewed.
+	 * @param productId
+	 * @param rating
+	 * @param comments
+	 * @throws NullPointerException if the rating is {@code null}.
+	 */
+	public ReviewRequest(int productId, Rating rating, String comments) {
+		this.productId = productId;
+		this.rating = Objects.requireNonNull(rating, "rating");
+		this.comments = comments;
+	}
+	
+	public int getProductId() {
+		return productId;
+	}
+	
+	public Rating getRating() {
+		return rating;
+	}
+	
+	public String getComments() {
+		return comments;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("ReviewRequest [productId=%d, rating=%s, comments=%s]", productId, rating, comments);
+	}
+}
@@ -0,0 +1,333 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * {@code Snapshot} reads and writes the whole catalog in a compact binary
+ * format.
+ * <br>
+ * A snapshot has a header (magic number, format version, flags and, since
+ * version 2, the last journal segment it includes), a table with
+ * every distinct product name and review comment, one length prefixed
+ * record per product with its reviews and, since version 3, those of them
+ * posted through the catalog rather than read from its reviews file,
+ * which refer to the strings by their position in the table, and a
+ * trailing CRC32 checksum of all the previous bytes. Snapshots of a
+ * catalog whose reviews are loaded on demand leave the reviews, held by
+ * their files, out.
+ * <br>
+ * Snapshots are written through a {@link FileChannel} into a temporary
+ * file that is then moved into place, and read back through a memory
+ * mapped buffer.
+ */
+final class Snapshot {
+	static final int MAGIC = 0x4F524153; // "ORAS"
+	static final short VERSION = 3;
+	
+	private static final byte DRINK = 'D';
+	private static final byte FOOD = 'F';
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// Flag of the snapshots without reviews.
+	private static final short NO_REVIEWS = 1;
+	
+	private final Map<Product, List<Review>> products;
+	private final Map<Integer, List<Review>> posted;
+	private final long journalSegment;
+	private final boolean reviews;
+	
+	/**
+	 * @param products the catalog.
+	 * @param posted the reviews of each product posted through the catalog,
+	 * also included in the reviews of the product.
+	 * @param journalSegment the last journal segment whose changes are
+	 * included in the catalog, 0 if none.
+	 * @param reviews whether the reviews are written, if not the values of
+	 * the catalog are ignored.
+	 */
+	Snapshot(Map<Product, List<Review>> products, Map<Integer, List<Review>> posted, long journalSegment, boolean reviews) {
+		this.products = products;
+		this.posted = posted;
+		this.journalSegment = journalSegment;
+		this.reviews = reviews;
+	}
+	
+	Map<Product, List<Review>> getProducts() {
+		return products;
+	}
+	
+	/**
+	 * @return the reviews posted through the catalog of the products that
+	 * have any, empty if the snapshot has no reviews or is of version 2.
+	 */
+	Map<Integer, List<Review>> getPosted() {
+		return posted;
+	}
+	
+	long getJournalSegment() {
+		return journalSegment;
+	}
+	
+	/**
+	 * @return whether the snapshot holds the reviews of the products.
+	 */
+	boolean hasReviews() {
+		return reviews;
+	}
+	
+	void write(Path file) throws IOException {
+		Map<String, Integer> strings = new HashMap<>();
+		List<byte[]> table = new ArrayList<>();
+		
+		products.forEach((product, reviews) -> {
+			intern(product.getName(), strings, table);
+			
+			if (this.reviews) {
+				reviews.forEach(review -> intern(review.getComments(), strings, table));
+				posted.getOrDefault(product.getId(), List.of()).forEach(review -> intern(review.getComments(), strings, table));
+			}
+		});
+		
+		Path part = file.resolveSibling(file.getFileName() + ".part");
+		
+		try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			Output out = new Output(channel);
+			
+			out.ensure(16);
+			out.buffer.putInt(MAGIC).putShort(VERSION).putShort(reviews ? 0 : NO_REVIEWS).putLong(journalSegment);
+			
+			out.ensure(4);
+			out.buffer.putInt(table.size());
+			for (byte[] bytes : table) {
+				out.ensure(4 + bytes.length);
+				out.buffer.putInt(bytes.length).put(bytes);
+			}
+			
+			out.ensure(4);
+			out.buffer.putInt(products.size());
+			for (Map.Entry<Product, List<Review>> entry : products.entrySet()) {
+				Product product = entry.getKey();
+				List<Review> reviews = this.reviews ? entry.getValue() : List.of();
+				List<Review> productPosted = this.reviews ? posted.getOrDefault(product.getId(), List.of()) : List.of();
+				byte[] unscaled = product.getPrice().unscaledValue().toByteArray();
+				
+				if (unscaled.length > 255) {
+					throw new IOException("Price out of range for product " + product.getId());
+				}
+				int length = 1 + 4 + 4 + 4 + 1 + unscaled.length + 1 + 8 + 4 + reviews.size() * 5 + 4 + productPosted.size() * 5;
+				
+				out.ensure(4 + length);
+				out.buffer.putInt(length)
+					.put(product instanceof Food ? FOOD : DRINK)
+					.putInt(product.getId())
+					.putInt(strings.get(product.getName()))
+					.putInt(product.getPrice().scale())
+					.put((byte) unscaled.length)
+					.put(unscaled)
+					.put((byte) product.getRating().ordinal())
+					.putLong(product instanceof Food ? product.getBestBefore().toEpochDay() : 0)
+					.putInt(reviews.size());
+				
+				for (Review review : reviews) {
+					out.buffer.put((byte) review.getRating().ordinal())
+						.putInt(strings.get(review.getComments()));
+				}
+				
+				out.buffer.putInt(productPosted.size());
+				for (Review review : productPosted) {
+					out.buffer.put((byte) review.getRating().ordinal())
+						.putInt(strings.get(review.getComments()));
+				}
+			}
+			
+			out.flush();
+			out.buffer.putLong(out.crc.getValue()).flip();
+			while (out.buffer.hasRemaining()) {
+				channel.write(out.buffer);
+			}
+			channel.force(true);
+		}
+		
+		Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * @throws IOException if the file cannot be read, is not a snapshot of a
+	 * supported version or its checksum does not match.
+	 * @param comments maps the comments of each review read to the string
+	 * the review keeps.
+	 * @param reviews whether the reviews are read. If not, they are skipped
+	 * and every product is mapped to {@code null}, for reviews loaded on
+	 * demand from their files. Products of a snapshot without reviews are
+	 * mapped to empty lists.
+	 */
+	static Snapshot read(Path file, UnaryOperator<String> comments, boolean reviews) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large " + file);
+			}
+			
+			if (size < 20) {
+				throw new IOException("Truncated snapshot " + file);
+			}
+			
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			
+			CRC32 crc = new CRC32();
+			crc.update(in.duplicate().limit((int) size - 8));
+			if (crc.getValue() != in.getLong((int) size - 8)) {
+				throw new IOException("Snapshot checksum mismatch " + file);
+			}
+			
+			if (in.getInt() != MAGIC) {
+				throw new IOException("Not a snapshot " + file);
+			}
+			
+			short version = in.getShort();
+			if (version < 1 || version > VERSION) {
+				throw new IOException("Unsupported snapshot version " + version + " " + file);
+			}
+			short flags = in.getShort();
+			long journalSegment = version >= 2 ? in.getLong() : 0;
+			
+			String[] table = new String[in.getInt()];
+			for (int i = 0; i < table.length; i++) {
+				int length = in.getInt();
+				table[i] = StandardCharsets.UTF_8.decode(in.slice().limit(length)).toString();
+				in.position(in.position() + length);
+			}
+			
+			int count = in.getInt();
+			Map<Product, List<Review>> products = new HashMap<>(count * 4 / 3 + 1);
+			Map<Integer, List<Review>> posted = new HashMap<>();
+			Rating[] ratings = Rating.values();
+			
+			for (int i = 0; i < count; i++) {
+				int next = in.getInt();
+				next += in.position();
+				
+				byte type = in.get();
+				int id = in.getInt();
+				String name = table[in.getInt()];
+				int scale = in.getInt();
+				byte[] unscaled = new byte[in.get() & 0xFF];
+				in.get(unscaled);
+				BigDecimal price = new BigDecimal(new BigInteger(unscaled), scale);
+				Rating rating = ratings[in.get()];
+				long bestBefore = in.getLong();
+				
+				int reviewCount = in.getInt();
+				List<Review> productReviews = null;
+				
+				if (reviews) {
+					productReviews = readReviews(in, reviewCount, table, comments);
+					
+					if (version >= 3) {
+						int postedCount = in.getInt();
+						
+						if (postedCount > 0) {
+							posted.put(id, readReviews(in, postedCount, table, comments));
+						}
+					}
+				}
+				
+				// Skip the reviews if they are not read, and any field appended to the record by a later version.
+				in.position(next);
+				
+				products.put(type == FOOD
+						? new Food(id, name, Money.valueOf(price), rating, LocalDate.ofEpochDay(bestBefore))
+						: new Drink(id, name, Money.valueOf(price), rating), productReviews);
+			}
+			
+			return new Snapshot(products, Collections.unmodifiableMap(posted), journalSegment, (flags & NO_REVIEWS) == 0);
+		}
+	}
+	
+	private static List<Review> readReviews(ByteBuffer in, int count, String[] table, UnaryOperator<String> comments) {
+		List<Review> reviews = new ReviewList();
+		Rating[] ratings = Rating.values();
+		
+		for (int i = 0; i < count; i++) {
+			Rating rating = ratings[in.get()];
+			reviews.add(new Review(rating, comments.apply(table[in.getInt()])));
+		}
+		
+		return reviews;
+	}
+	
+	private static void intern(String value, Map<String, Integer> strings, List<byte[]> table) {
+		if (!strings.containsKey(value)) {
+			strings.put(value, table.size());
+			table.add(value.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+	
+	/**
+	 * Buffered channel output that keeps the checksum of everything written.
+	 */
+	private static class Output {
+		private final FileChannel channel;
+		private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private final CRC32 crc = new CRC32();
+		
+		private Output(FileChannel channel) {
+			this.channel = channel;
+		}
+		
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+				
+				if (buffer.capacity() < bytes) {
+					buffer = ByteBuffer.allocate(bytes);
+				}
+			}
+		}
+		
+		private void flush() throws IOException {
+			buffer.flip();
+			crc.update(buffer.duplicate());
+			
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
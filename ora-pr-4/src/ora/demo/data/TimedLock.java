@@ -0,0 +1,115 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@code TimedLock} records in {@link Metrics} how long threads wait for a
+ * lock of a {@link ReentrantReadWriteLock} and, for its write lock, how
+ * long it is held, from the outermost lock to the matching unlock.
+ * <br>
+ * Read locks are shared, so their hold time is not recorded.
+ */
+final class TimedLock implements Lock {
+	private final ReentrantReadWriteLock owner;
+	private final Lock lock;
+	private final boolean exclusive;
+	private final Metrics metrics;
+	// Only accessed holding the write lock.
+	private long acquired;
+	
+	static TimedLock readLock(ReentrantReadWriteLock owner, Metrics metrics) {
+		return new TimedLock(owner, owner.readLock(), false, metrics);
+	}
+	
+	static TimedLock writeLock(ReentrantReadWriteLock owner, Metrics metrics) {
+		return new TimedLock(owner, owner.writeLock(), true, metrics);
+	}
+	
+	private TimedLock(ReentrantReadWriteLock owner, Lock lock, boolean exclusive, Metrics metrics) {
+		this.owner = owner;
+		this.lock = lock;
+		this.exclusive = exclusive;
+		this.metrics = metrics;
+	}
+	
+	@Override
+	public void lock() {
+		long start = System.nanoTime();
+		lock.lock();
+		acquired(start);
+	}
+	
+	@Override
+	public void lockInterruptibly() throws InterruptedException {
+		long start = System.nanoTime();
+		lock.lockInterruptibly();
+		acquired(start);
+	}
+	
+	@Override
+	public boolean tryLock() {
+		long start = System.nanoTime();
+		
+		if (lock.tryLock()) {
+			acquired(start);
+			return true;
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+		long start = System.nanoTime();
+		
+		if (lock.tryLock(time, unit)) {
+			acquired(start);
+			return true;
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public void unlock() {
+		if (exclusive && owner.getWriteHoldCount() == 1) {
+			metrics.lockReleased(System.nanoTime() - acquired);
+		}
+		
+		lock.unlock();
+	}
+	
+	@Override
+	public Condition newCondition() {
+		return lock.newCondition();
+	}
+	
+	private void acquired(long start) {
+		long now = System.nanoTime();
+		metrics.lockAcquired(now - start);
+		
+		if (exclusive && owner.getWriteHoldCount() == 1) {
+			acquired = now;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@code VirtualThreads} creates executors running each task on a virtual
+ * thread, on Java runtimes that support them.
+ */
+public final class VirtualThreads {
+	private static final Logger logger = Logger.getLogger(VirtualThreads.class.getName());
+	
+	private VirtualThreads() {
+	}
+	
+	/**
+	 * @param fallback creates the executor used instead on Java runtimes
+	 * without virtual threads.
+	 */
+	public static ExecutorService newPerTaskExecutor(Supplier<ExecutorService> fallback) {
+		try {
+			// Looked up at run time, virtual threads are not part of the Java 11 API.
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			logger.log(Level.WARNING, "Virtual threads are not supported, using platform threads");
+			return fallback.get();
+		}
+	}
+}
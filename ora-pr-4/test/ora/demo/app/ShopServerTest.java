@@ -0,0 +1,136 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ora.demo.data.CatalogFixture;
+
+class ShopServerTest {
+	
+	@TempDir
+	Path folder;
+	
+	private final HttpClient client = HttpClient.newHttpClient();
+	private CatalogFixture catalog;
+	private ShopServer server;
+	
+	@BeforeEach
+	void startServer() throws IOException {
+		catalog = new CatalogFixture(folder).drink(1, 4).drink(2, 2).reviews(1, "4,Nice");
+		server = new ShopServer(catalog.open(), new InetSocketAddress("localhost", 0), "2", 0);
+		server.start();
+	}
+	
+	@AfterEach
+	void stopServer() {
+		server.stop();
+		catalog.close();
+	}
+	
+	@Test
+	void findsProducts() throws Exception {
+		HttpResponse<String> response = get("/products/1");
+		
+		assertEquals(200, response.statusCode());
+		assertEquals("{\"id\":1,\"type\":\"drink\",\"name\":\"Drink 1\",\"price\":1.00,\"discount\":0.00,\"rating\":4,\"bestBefore\":\""
+				+ LocalDate.now() + "\"}", response.body());
+		assertEquals(404, get("/products/3").statusCode());
+		assertEquals(400, get("/products/one").statusCode());
+		assertEquals(404, get("/products/1/unknown").statusCode());
+	}
+	
+	@Test
+	void queriesProductsByPage() throws Exception {
+		HttpResponse<String> first = get("/products?limit=1");
+		
+		assertTrue(first.body().contains("\"id\":1"));
+		assertTrue(first.body().endsWith(",\"after\":1}"));
+		assertTrue(get("/products?limit=1&after=1").body().contains("\"id\":2"));
+		assertTrue(get("/products?rating=3").body().startsWith("{\"products\":[{\"id\":1,"));
+		assertTrue(get("/products?limit=2147483647").body().contains("\"id\":2"));
+		assertEquals(400, get("/products?sort=unknown").statusCode());
+	}
+	
+	@Test
+	void rejectsRatingsOutOfRange() throws Exception {
+		assertEquals(400, get("/products?rating=6").statusCode());
+		assertEquals(400, post("/products/1/reviews", "rating=-1").statusCode());
+		assertEquals(400, post("/products/1/reviews", "rating=6").statusCode());
+		assertEquals(400, post("/products/1/reviews", "comments=None").statusCode());
+		assertEquals(405, get("/products/1/reviews").statusCode());
+	}
+	
+	@Test
+	void reviewsAreReportedAsSent() throws Exception {
+		String comments = "Café, \"crème\" ☕";
+		
+		// Percent encoded, and sent as UTF-8 without encoding.
+		assertEquals(200, post("/products/2/reviews", "rating=5&comments=" + URLEncoder.encode(comments, StandardCharsets.UTF_8)).statusCode());
+		assertEquals(200, post("/products/2/reviews", "rating=1&comments=" + comments.replace(",", "%2C")).statusCode());
+		
+		HttpResponse<String> report = get("/products/2/report?lang=en-GB");
+		
+		assertEquals(200, report.statusCode());
+		assertTrue(report.body().startsWith("{\"id\":2,\"lines\":[\"Drink 2, price: £2.00, Rating: ★★★☆☆"), report.body());
+		assertTrue(report.body().endsWith(",\"Review: ★★★★★\\tCafé, \\\"crème\\\" ☕\",\"Review: ★☆☆☆☆\\tCafé, \\\"crème\\\" ☕\"]}"),
+				report.body());
+		assertEquals(404, get("/products/3/report").statusCode());
+	}
+	
+	@Test
+	void sendsDiscountsByLocale() throws Exception {
+		HttpResponse<String> response = get("/discounts?lang=en-GB");
+		
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().startsWith("{") && response.body().endsWith("}"), response.body());
+		assertEquals(405, post("/discounts", "").statusCode());
+	}
+	
+	private HttpResponse<String> get(String path) throws Exception {
+		return client.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+	}
+	
+	private HttpResponse<String> post(String path, String form) throws Exception {
+		return client.send(HttpRequest.newBuilder(uri(path))
+				.header("Content-Type", "application/x-www-form-urlencoded")
+				.POST(HttpRequest.BodyPublishers.ofString(form, StandardCharsets.UTF_8))
+				.build(), HttpResponse.BodyHandlers.ofString());
+	}
+	
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+	}
+}
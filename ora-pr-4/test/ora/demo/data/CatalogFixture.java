@@ -0,0 +1,101 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates product managers on folders of their own, through the
+ * {@code ora.demo.data.<key>} system properties that override the
+ * configuration. The properties are cleared when the fixture is closed.
+ * Public for the tests of the applications.
+ */
+public final class CatalogFixture implements AutoCloseable {
+	private final Path dataFolder;
+	private final Map<String, String> config = new HashMap<>();
+	private final List<ProductManager> managers = new ArrayList<>();
+	
+	public CatalogFixture(Path folder) throws IOException {
+		dataFolder = Files.createDirectories(folder.resolve("data"));
+		
+		config.put("data.folder", dataFolder.toString());
+		config.put("temp.folder", Files.createDirectories(folder.resolve("temp")).toString());
+		config.put("reports.folder", Files.createDirectories(folder.resolve("reports")).toString());
+		config.put("journal.sync", "NEVER");
+	}
+	
+	public CatalogFixture set(String key, String value) {
+		config.put(key, value);
+		return this;
+	}
+	
+	public Path getDataFolder() {
+		return dataFolder;
+	}
+	
+	/**
+	 * Writes the file of a drink priced 1.00 times its id, as long as ids are small.
+	 */
+	public CatalogFixture drink(int id, int stars) throws IOException {
+		Files.writeString(dataFolder.resolve("product" + id + ".csv"),
+				"D," + id + ",Drink " + id + "," + id + ".00," + stars + ",\n", StandardCharsets.UTF_8);
+		return this;
+	}
+	
+	/**
+	 * Appends reviews to the reviews file of a product.
+	 * @param reviews the stars and comments of each review, as {@code 4,Nice}.
+	 */
+	public CatalogFixture reviews(int productId, String... reviews) throws IOException {
+		StringBuilder csv = new StringBuilder();
+		
+		for (String review : reviews) {
+			csv.append(review).append('\n');
+		}
+		
+		Files.writeString(dataFolder.resolve("reviews" + productId + ".csv"), csv, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		return this;
+	}
+	
+	/**
+	 * Creates a product manager, restoring the snapshot and journal of the
+	 * managers opened before if they were closed.
+	 */
+	public ProductManager open() {
+		config.forEach((key, value) -> System.setProperty("ora.demo.data." + key, value));
+		
+		ProductManager pm = new ProductManager();
+		managers.add(pm);
+		return pm;
+	}
+	
+	@Override
+	public void close() {
+		managers.forEach(ProductManager::close);
+		config.keySet().forEach(key -> System.clearProperty("ora.demo.data." + key));
+	}
+}
@@ -0,0 +1,142 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import org.junit.jupiter.api.Test;
+
+class CsvParserTest {
+	private final CsvParser parser = new CsvParser();
+	
+	@Test
+	void parsesTypedFields() throws ParseException {
+		ByteBuffer data = bytes("D,101,Tea,1.99,-3,2021-12-31\n");
+		
+		assertEquals(6, parser.parse(data, 10));
+		assertEquals("D", parser.getString(0));
+		assertEquals(101, parser.getInt(1));
+		assertEquals("Tea", parser.getString(2));
+		assertEquals(new BigDecimal("1.99"), parser.getDecimal(3));
+		assertEquals(-3, parser.getInt(4));
+		assertEquals(LocalDate.of(2021, 12, 31), parser.getDate(5));
+		assertFalse(data.hasRemaining());
+	}
+	
+	@Test
+	void quotedFieldsKeepSeparatorsAndQuotes() throws ParseException {
+		assertEquals(3, parser.parse(bytes("4,\"Nice, \"\"really\"\"\",\"\"\n"), 10));
+		assertEquals("Nice, \"really\"", parser.getString(1));
+		assertTrue(parser.isEmpty(2));
+	}
+	
+	@Test
+	void lastFieldHoldsTheRestOfTheLine() throws ParseException {
+		assertEquals(2, parser.parse(bytes("5,Good, but pricey\r\n"), 2));
+		assertEquals("Good, but pricey", parser.getString(1));
+	}
+	
+	@Test
+	void decodesMultibyteCharacters() throws ParseException {
+		parser.parse(bytes("3,Café ★,ok"), 10);
+		assertEquals("Café ★", parser.getString(1));
+	}
+	
+	@Test
+	void parsesConsecutiveLines() throws ParseException {
+		ByteBuffer data = bytes("1,a\r\n\n2,b");
+		
+		assertEquals(2, parser.parse(data, 10));
+		assertEquals("a", parser.getString(1));
+		assertEquals(1, parser.parse(data, 10));
+		assertTrue(parser.isEmpty(0));
+		assertEquals(2, parser.parse(data, 10));
+		assertEquals(2, parser.getInt(0));
+		assertFalse(data.hasRemaining());
+	}
+	
+	@Test
+	void growsForLongLinesAndManyFields() throws ParseException {
+		String value = "x".repeat(1000);
+		StringBuilder line = new StringBuilder(value);
+		
+		for (int i = 1; i < 20; i++) {
+			line.append(',').append(i);
+		}
+		
+		assertEquals(20, parser.parse(bytes(line.toString()), 100));
+		assertEquals(value, parser.getString(0));
+		assertEquals(19, parser.getInt(19));
+	}
+	
+	@Test
+	void malformedQuotesSkipTheLine() throws ParseException {
+		ByteBuffer data = bytes("1,\"open\n2,\"closed\"x\n3,ok\n");
+		
+		assertThrows(ParseException.class, () -> parser.parse(data, 10));
+		assertThrows(ParseException.class, () -> parser.parse(data, 10));
+		assertEquals(2, parser.parse(data, 10));
+		assertEquals(3, parser.getInt(0));
+	}
+	
+	@Test
+	void rejectsInvalidNumbersAndDates() throws ParseException {
+		parser.parse(bytes("1x,,99999999999,2.5.1,2021-13-01,½"), 10);
+		
+		assertThrows(NumberFormatException.class, () -> parser.getInt(0));
+		assertThrows(NumberFormatException.class, () -> parser.getInt(1));
+		assertThrows(NumberFormatException.class, () -> parser.getInt(2));
+		assertThrows(NumberFormatException.class, () -> parser.getDecimal(3));
+		assertThrows(DateTimeParseException.class, () -> parser.getDate(4));
+		assertThrows(NumberFormatException.class, () -> parser.getDecimal(5));
+		assertThrows(IndexOutOfBoundsException.class, () -> parser.getString(6));
+	}
+	
+	@Test
+	void quoteOnlyWhenNeeded() {
+		assertEquals("plain", CsvParser.quote("plain"));
+		assertEquals("\"a,b\"", CsvParser.quote("a,b"));
+		assertEquals("\"say \"\"hi\"\"\"", CsvParser.quote("say \"hi\""));
+		assertEquals("two lines", CsvParser.quote("two\r\nlines"));
+		assertEquals("\"two lines, \"\"three\"\"\"", CsvParser.quote("two\nlines, \"three\""));
+	}
+	
+	@Test
+	void quotedValuesParseBack() throws ParseException {
+		ByteBuffer data = bytes("5," + CsvParser.quote("Tasty, \"fresh\"\r\nand cheap") + "\n4,next");
+		
+		assertEquals(2, parser.parse(data, 2));
+		assertEquals("Tasty, \"fresh\" and cheap", parser.getString(1));
+		assertEquals(2, parser.parse(data, 2));
+		assertEquals("next", parser.getString(1));
+	}
+	
+	private static ByteBuffer bytes(String text) {
+		return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
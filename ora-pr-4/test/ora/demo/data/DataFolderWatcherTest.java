@@ -0,0 +1,91 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DataFolderWatcherTest {
+	
+	@TempDir
+	Path folder;
+	
+	@Test
+	void changedFilesAreHandedOverInBatches() throws Exception {
+		BlockingQueue<List<Set<Integer>>> batches = new LinkedBlockingQueue<>();
+		
+		try (DataFolderWatcher watcher = new DataFolderWatcher(folder, "product{0}.csv", "reviews{0}.csv", 200, 10000,
+				(products, reviews) -> batches.add(List.of(products, reviews)))) {
+			Files.writeString(folder.resolve("product1.csv"), "D,1,Tea,1.00,0,\n");
+			Files.writeString(folder.resolve("reviews1.csv"), "5,Nice\n");
+			Files.writeString(folder.resolve("reviews1,002.csv"), "4,Fine\n");
+			Files.writeString(folder.resolve("notes.txt"), "Ignored\n");
+			Files.writeString(folder.resolve("product-3.csv"), "Ignored\n");
+			
+			Set<Integer> products = new HashSet<>();
+			Set<Integer> reviews = new HashSet<>();
+			
+			// Debounced, the changes usually arrive in one batch, unless the disk is slow.
+			while (!products.contains(1) || reviews.size() < 2) {
+				List<Set<Integer>> batch = batches.poll(10, TimeUnit.SECONDS);
+				
+				assertNotNull(batch, "Changes not handed over");
+				products.addAll(batch.get(0));
+				reviews.addAll(batch.get(1));
+			}
+			
+			assertEquals(Set.of(1), products);
+			assertEquals(Set.of(1, 1002), reviews);
+		}
+	}
+	
+	@Test
+	void fullBatchesAreHandedOverAtOnce() throws Exception {
+		BlockingQueue<Set<Integer>> batches = new LinkedBlockingQueue<>();
+		
+		// Never quiet long enough for the debounce time.
+		try (DataFolderWatcher watcher = new DataFolderWatcher(folder, "product{0}.csv", "reviews{0}.csv", 60000, 2,
+				(products, reviews) -> batches.add(products))) {
+			Files.writeString(folder.resolve("product1.csv"), "D,1,Tea,1.00,0,\n");
+			Files.writeString(folder.resolve("product2.csv"), "D,2,Tea,2.00,0,\n");
+			
+			Set<Integer> products = new HashSet<>();
+			
+			while (products.size() < 2) {
+				Set<Integer> batch = batches.poll(10, TimeUnit.SECONDS);
+				
+				assertNotNull(batch, "Full batch not handed over");
+				products.addAll(batch);
+			}
+			
+			assertEquals(Set.of(1, 2), products);
+		}
+	}
+}
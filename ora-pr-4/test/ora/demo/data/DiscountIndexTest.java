@@ -0,0 +1,105 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class DiscountIndexTest {
+	private static final LocalDate TODAY = LocalDate.of(2021, 6, 1);
+	private static final LocalTime NOON = LocalTime.of(12, 0);
+	private static final LocalTime DRINK_TIME = LocalTime.of(18, 0);
+	
+	private final DiscountIndex index = new DiscountIndex();
+	
+	@Test
+	void drinksAreDiscountedDuringDrinkTime() {
+		index.add(new Drink(1, "Tea", 1000, Rating.FOUR_STAR));
+		index.add(new Drink(2, "Coffee", 2000, Rating.FOUR_STAR));
+		
+		assertEquals(Map.of(Rating.FOUR_STAR, 0L), index.getTotals(TODAY, NOON));
+		assertEquals(Map.of(Rating.FOUR_STAR, 300L), index.getTotals(TODAY, DRINK_TIME));
+	}
+	
+	@Test
+	void foodIsDiscountedOnItsBestBeforeDate() {
+		index.add(new Food(1, "Cake", 1000, Rating.TWO_STAR, TODAY));
+		index.add(new Food(2, "Bread", 500, Rating.TWO_STAR, TODAY.plusDays(1)));
+		
+		assertEquals(Map.of(Rating.TWO_STAR, 100L), index.getTotals(TODAY, NOON));
+		assertEquals(Map.of(Rating.TWO_STAR, 50L), index.getTotals(TODAY.plusDays(1), NOON));
+		assertEquals(Map.of(Rating.TWO_STAR, 0L), index.getTotals(TODAY.minusDays(1), NOON));
+	}
+	
+	@Test
+	void discountsAreRoundedPerProduct() {
+		// 10% of 1.99 and 0.05 rounded half up.
+		index.add(new Drink(1, "Tea", 199, Rating.ONE_STAR));
+		index.add(new Drink(2, "Water", 5, Rating.ONE_STAR));
+		
+		assertEquals(Map.of(Rating.ONE_STAR, 21L), index.getTotals(TODAY, DRINK_TIME));
+	}
+	
+	@Test
+	void replaceMovesTheProductToItsNewRating() {
+		Product tea = new Drink(1, "Tea", 1000, Rating.NOT_RATED);
+		Product cake = new Food(2, "Cake", 1000, Rating.NOT_RATED, TODAY);
+		
+		index.add(tea);
+		index.add(cake);
+		index.replace(cake, cake.applyRating(Rating.FIVE_STAR));
+		
+		Map<Rating, Long> totals = index.getTotals(TODAY, NOON);
+		assertEquals(Map.of(Rating.NOT_RATED, 0L, Rating.FIVE_STAR, 100L), totals);
+		
+		index.replace(tea, tea.applyRating(Rating.FIVE_STAR));
+		assertEquals(Map.of(Rating.FIVE_STAR, 100L), index.getTotals(TODAY, NOON));
+	}
+	
+	@Test
+	void removeAndClearDropTheProducts() {
+		Product cake = new Food(1, "Cake", 1000, Rating.THREE_STAR, TODAY);
+		
+		index.add(cake);
+		index.add(new Drink(2, "Tea", 1000, Rating.ONE_STAR));
+		index.remove(cake);
+		assertEquals(Map.of(Rating.ONE_STAR, 0L), index.getTotals(TODAY, NOON));
+		
+		index.clear();
+		assertTrue(index.getTotals(TODAY, DRINK_TIME).isEmpty());
+	}
+	
+	@Test
+	void totalsAreKeptUntilSomethingChanges() {
+		index.add(new Drink(1, "Tea", 1000, Rating.FOUR_STAR));
+		
+		Map<Rating, Long> totals = index.getTotals(TODAY, NOON);
+		assertSame(totals, index.getTotals(TODAY, NOON.plusHours(1)));
+		assertEquals(Map.of(Rating.FOUR_STAR, 100L), index.getTotals(TODAY, DRINK_TIME));
+		
+		index.add(new Drink(2, "Coffee", 1000, Rating.FOUR_STAR));
+		assertEquals(Map.of(Rating.FOUR_STAR, 200L), index.getTotals(TODAY, DRINK_TIME));
+	}
+}
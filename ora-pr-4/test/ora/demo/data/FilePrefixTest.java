@@ -0,0 +1,64 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class FilePrefixTest {
+	
+	@Test
+	void appendedBytesExtendThePrefix() {
+		ByteBuffer data = bytes("5,one\n4,two\n");
+		FilePrefix head = FilePrefix.of(data, 6);
+		
+		assertEquals(6, head.getLength());
+		assertEquals(FilePrefix.of(data, data.limit()), head.extend(data, data.limit()));
+		assertEquals(FilePrefix.of(data, data.limit()), head.append("4,two\n".getBytes(StandardCharsets.UTF_8)));
+		assertEquals(FilePrefix.EMPTY, FilePrefix.of(data, 0));
+	}
+	
+	@Test
+	void rewrittenFilesDoNotMatch() {
+		FilePrefix prefix = FilePrefix.of(bytes("5,one\n"), 6);
+		
+		// Same length, different content.
+		assertNotEquals(prefix, FilePrefix.of(bytes("1,one\n"), 6));
+		assertNotEquals(prefix, FilePrefix.of(bytes("5,one\n4,two\n"), 12));
+		assertEquals(prefix, FilePrefix.of(bytes("5,one\n4,two\n"), 6));
+	}
+	
+	@Test
+	void positionIsIgnored() {
+		ByteBuffer data = bytes("5,one\n");
+		FilePrefix prefix = FilePrefix.of(data, 6);
+		
+		data.position(3);
+		assertEquals(prefix, FilePrefix.of(data, 6));
+		assertEquals(3, data.position());
+	}
+	
+	private static ByteBuffer bytes(String text) {
+		return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,148 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IntHashMapTest {
+	
+	@Test
+	void putGetAndReplace() {
+		IntHashMap<String> map = new IntHashMap<>();
+		
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(-7, "b"));
+		assertEquals("a", map.put(1, "c"));
+		
+		assertEquals(2, map.size());
+		assertEquals("c", map.get(1));
+		assertEquals("b", map.get(-7));
+		assertNull(map.get(2));
+		assertTrue(map.containsKey(-7));
+		assertFalse(map.containsKey(2));
+	}
+	
+	@Test
+	void putIfAbsentKeepsCurrentValue() {
+		IntHashMap<String> map = new IntHashMap<>();
+		
+		assertNull(map.putIfAbsent(5, "a"));
+		assertEquals("a", map.putIfAbsent(5, "b"));
+		assertEquals("a", map.get(5));
+	}
+	
+	@Test
+	void nullValuesAreRejected() {
+		assertThrows(NullPointerException.class, () -> new IntHashMap<String>().put(1, null));
+	}
+	
+	@Test
+	void removeKeepsProbeChainsReachable() {
+		// Holds 16 mappings in a table of 32 slots.
+		IntHashMap<Integer> map = new IntHashMap<>(16);
+		// Keys sharing a slot of that table, so they form one probe chain.
+		List<Integer> chain = collidingKeys(32, 6);
+		
+		chain.forEach(key -> map.put(key, key));
+		
+		// Removing from the head, the middle and the tail must shift the rest back.
+		for (int removed : new int[] {chain.get(0), chain.get(3), chain.get(5)}) {
+			assertEquals(removed, map.remove(removed));
+			assertNull(map.get(removed));
+		}
+		
+		for (int key : List.of(chain.get(1), chain.get(2), chain.get(4))) {
+			assertEquals(key, map.get(key));
+		}
+		assertEquals(3, map.size());
+		assertNull(map.remove(chain.get(0)));
+	}
+	
+	@Test
+	void matchesHashMapUnderRandomOperations() {
+		IntHashMap<Integer> map = new IntHashMap<>();
+		Map<Integer, Integer> expected = new HashMap<>();
+		Random random = new Random(42);
+		
+		for (int i = 0; i < 100_000; i++) {
+			// A narrow key range keeps chains long and removals frequent.
+			int key = random.nextInt(512) - 256;
+			
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				assertEquals(expected.put(key, i), map.put(key, i));
+			}
+		}
+		
+		assertEquals(expected.size(), map.size());
+		for (int key = -256; key < 256; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+		
+		List<Integer> values = new ArrayList<>();
+		map.forEachValue(values::add);
+		assertEquals(expected.size(), values.size());
+		assertTrue(values.containsAll(expected.values()));
+	}
+	
+	@Test
+	void clearEmptiesTheMap() {
+		IntHashMap<String> map = new IntHashMap<>();
+		
+		for (int i = 0; i < 100; i++) {
+			map.put(i, "v" + i);
+		}
+		map.clear();
+		
+		assertTrue(map.isEmpty());
+		assertNull(map.get(10));
+		map.put(10, "x");
+		assertEquals("x", map.get(10));
+	}
+	
+	/**
+	 * @return keys that land in the same slot of a table of the given
+	 * capacity, with the hash of {@link IntHashMap}.
+	 */
+	private static List<Integer> collidingKeys(int capacity, int count) {
+		Map<Integer, List<Integer>> bySlot = new HashMap<>();
+		
+		for (int key = 0; ; key++) {
+			int h = key * 0x9E3779B9;
+			List<Integer> keys = bySlot.computeIfAbsent((h ^ (h >>> 16)) & (capacity - 1), s -> new ArrayList<>());
+			
+			keys.add(key);
+			if (keys.size() == count) {
+				return keys;
+			}
+		}
+	}
+}
@@ -0,0 +1,194 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalTest {
+	private static final String FILE_NAME = "journal{0,number,#}.log";
+	
+	@TempDir
+	Path folder;
+	
+	@Test
+	void replaysRecordsInOrder() throws IOException {
+		LocalDate bestBefore = LocalDate.of(2021, 6, 1);
+		
+		try (Journal journal = open()) {
+			journal.logProduct(new Drink(1, "Tea", 199, Rating.NOT_RATED));
+			journal.logProduct(new Food(2, "Cake ★", 399, Rating.NOT_RATED, bestBefore));
+			journal.sync(journal.logReview(1, new Review(Rating.FOUR_STAR, "Nice, hot"), Rating.FOUR_STAR));
+		}
+		
+		Recorder recorder = replay(0);
+		
+		assertEquals(List.of("product 1 Tea 1.99 NOT_RATED", "product 2 Cake ★ 3.99 NOT_RATED 2021-06-01",
+				"review 1 FOUR_STAR Nice, hot FOUR_STAR"), recorder.records);
+		assertTrue(recorder.products.get(0) instanceof Drink);
+		assertEquals(bestBefore, recorder.products.get(1).getBestBefore());
+	}
+	
+	@Test
+	void replaySkipsSegmentsUpToTheGivenOne() throws IOException {
+		long closed;
+		
+		try (Journal journal = open()) {
+			journal.logReview(1, new Review(Rating.ONE_STAR, "first"), Rating.ONE_STAR);
+			closed = journal.rotate();
+			journal.logReview(1, new Review(Rating.TWO_STAR, "second"), Rating.TWO_STAR);
+		}
+		
+		assertEquals(1, closed);
+		assertEquals(List.of("review 1 ONE_STAR first ONE_STAR", "review 1 TWO_STAR second TWO_STAR"), replay(0).records);
+		assertEquals(List.of("review 1 TWO_STAR second TWO_STAR"), replay(closed).records);
+		
+		try (Journal journal = open()) {
+			journal.deleteUpTo(closed);
+		}
+		assertFalse(Files.exists(segment(1)));
+		assertTrue(Files.exists(segment(2)));
+	}
+	
+	@Test
+	void opensANewSegmentAfterTheExistingOnes() throws IOException {
+		try (Journal journal = open()) {
+			journal.logReview(1, new Review(Rating.ONE_STAR, "old"), Rating.ONE_STAR);
+		}
+		
+		try (Journal journal = open()) {
+			// The segment being written is not replayed.
+			journal.logReview(1, new Review(Rating.TWO_STAR, "new"), Rating.TWO_STAR);
+			
+			Recorder recorder = new Recorder();
+			assertEquals(1, journal.replay(0, recorder));
+			assertEquals(List.of("review 1 ONE_STAR old ONE_STAR"), recorder.records);
+		}
+		assertTrue(Files.exists(segment(2)));
+	}
+	
+	@Test
+	void replayStopsAtACorruptedRecord() throws IOException {
+		writeReviews("one", "two", "three");
+		
+		try (RandomAccessFile file = new RandomAccessFile(segment(1).toFile(), "rw")) {
+			// Flip the last byte of the second record, past the first record
+			// and the length and checksum of the second.
+			long second = 8 + readInt(file, 0);
+			long position = second + 8 + readInt(file, second) - 1;
+			
+			file.seek(position);
+			int b = file.read();
+			file.seek(position);
+			file.write(b ^ 0xFF);
+		}
+		
+		assertEquals(List.of("review 1 FIVE_STAR one FIVE_STAR"), replay(0).records);
+	}
+	
+	@Test
+	void replayStopsAtATruncatedRecord() throws IOException {
+		writeReviews("one", "two");
+		
+		try (RandomAccessFile file = new RandomAccessFile(segment(1).toFile(), "rw")) {
+			file.setLength(file.length() - 3);
+		}
+		
+		assertEquals(List.of("review 1 FIVE_STAR one FIVE_STAR"), replay(0).records);
+	}
+	
+	@Test
+	void corruptionOnlyStopsItsOwnSegment() throws IOException {
+		try (Journal journal = open()) {
+			journal.logReview(1, new Review(Rating.FIVE_STAR, "lost"), Rating.FIVE_STAR);
+			journal.rotate();
+			journal.logReview(1, new Review(Rating.FIVE_STAR, "kept"), Rating.FIVE_STAR);
+		}
+		
+		try (RandomAccessFile file = new RandomAccessFile(segment(1).toFile(), "rw")) {
+			file.seek(4);
+			file.writeInt(file.readInt() + 1);
+		}
+		
+		assertEquals(List.of("review 1 FIVE_STAR kept FIVE_STAR"), replay(0).records);
+	}
+	
+	private void writeReviews(String... comments) throws IOException {
+		try (Journal journal = open()) {
+			for (String comment : comments) {
+				journal.logReview(1, new Review(Rating.FIVE_STAR, comment), Rating.FIVE_STAR);
+			}
+		}
+	}
+	
+	private Recorder replay(long afterSegment) throws IOException {
+		Recorder recorder = new Recorder();
+		
+		// Opening the journal starts a new segment, which is not replayed.
+		try (Journal journal = open()) {
+			journal.replay(afterSegment, recorder);
+		}
+		
+		return recorder;
+	}
+	
+	private Journal open() throws IOException {
+		return new Journal(folder, FILE_NAME, Journal.SyncPolicy.NEVER, 0);
+	}
+	
+	private Path segment(long number) {
+		return NumberedFiles.resolve(folder, FILE_NAME, number);
+	}
+	
+	private static int readInt(RandomAccessFile file, long position) throws IOException {
+		file.seek(position);
+		return file.readInt();
+	}
+	
+	private static class Recorder implements Journal.Handler {
+		final List<String> records = new ArrayList<>();
+		final List<Product> products = new ArrayList<>();
+		
+		@Override
+		public void product(Product product) {
+			BigDecimal price = product.getPrice();
+			
+			products.add(product);
+			records.add("product " + product.getId() + " " + product.getName() + " " + price + " " + product.getRating()
+					+ (product instanceof Food ? " " + product.getBestBefore() : ""));
+		}
+		
+		@Override
+		public void review(int productId, Review review, Rating productRating) {
+			records.add("review " + productId + " " + review.getRating() + " " + review.getComments() + " " + productRating);
+		}
+	}
+}
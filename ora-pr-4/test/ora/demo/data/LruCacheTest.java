@@ -0,0 +1,74 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LruCacheTest {
+	
+	@Test
+	void evictsTheLeastRecentlyUsedEntryOfASegment() {
+		// A single entry per segment.
+		LruCache<Integer, String> cache = new LruCache<>(16);
+		int key = 0;
+		
+		cache.put(0, "v0");
+		
+		// Until a key of the same segment evicts it.
+		while (cache.get(0) != null) {
+			key++;
+			cache.put(key, "v" + key);
+		}
+		
+		assertTrue(key < 100);
+		assertEquals("v" + key, cache.get(key));
+	}
+	
+	@Test
+	void keepsEntriesUpToItsSize() {
+		LruCache<Integer, String> cache = new LruCache<>(16_000);
+		
+		for (int i = 0; i < 16_000; i++) {
+			cache.put(i, "v" + i);
+		}
+		
+		// Segments fill evenly, so most entries stay cached.
+		int cached = 0;
+		
+		for (int i = 0; i < 16_000; i++) {
+			if (cache.get(i) != null) {
+				cached++;
+			}
+		}
+		assertEquals(16_000, cached, 16_000 / 10);
+	}
+	
+	@Test
+	void removesEntries() {
+		LruCache<String, String> cache = new LruCache<>(100);
+		
+		cache.put("a", "1");
+		cache.remove("a");
+		
+		assertNull(cache.get("a"));
+	}
+}
@@ -0,0 +1,58 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+	
+	@Test
+	void amountsAreExact() {
+		assertEquals(199, Money.valueOf(new BigDecimal("1.99")));
+		assertEquals(100, Money.valueOf(new BigDecimal("1.000")));
+		assertEquals(-5, Money.valueOf(new BigDecimal("-0.05")));
+		assertEquals(new BigDecimal("1.99"), Money.toBigDecimal(199));
+	}
+	
+	@Test
+	void excessDecimalPlacesAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> Money.valueOf(new BigDecimal("1.005")));
+		assertThrows(IllegalArgumentException.class, () -> Money.valueOf(new BigDecimal("1e20")));
+	}
+	
+	@Test
+	void boundsAreRoundedExplicitly() {
+		assertEquals(101, Money.valueOf(new BigDecimal("1.005"), RoundingMode.CEILING));
+		assertEquals(100, Money.valueOf(new BigDecimal("1.005"), RoundingMode.FLOOR));
+	}
+	
+	@Test
+	void discountsAreRoundedHalfUp() {
+		long rate = Money.rate(Product.DISCOUNT_RATE);
+		
+		assertEquals(20, Money.multiply(199, rate));
+		assertEquals(1, Money.multiply(5, rate));
+		assertEquals(0, Money.multiply(4, rate));
+	}
+}
@@ -0,0 +1,100 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class ProductIndexTest {
+	private static final LocalDate TODAY = LocalDate.of(2021, 6, 1);
+	
+	private final ProductIndex index = new ProductIndex();
+	
+	@Test
+	void findsProductsByRating() {
+		index.add(new Drink(1, "Tea", 199, Rating.FOUR_STAR));
+		index.add(new Drink(2, "Coffee", 199, Rating.FOUR_STAR));
+		index.add(new Drink(3, "Water", 50, Rating.ONE_STAR));
+		
+		assertEquals(Set.of(1, 2), Set.copyOf(ids(index.findByRating(Rating.FOUR_STAR))));
+		assertTrue(index.findByRating(Rating.FIVE_STAR).isEmpty());
+	}
+	
+	@Test
+	void findsProductsByPriceRange() {
+		index.add(new Drink(1, "Tea", 199, Rating.FOUR_STAR));
+		index.add(new Drink(2, "Water", 50, Rating.ONE_STAR));
+		index.add(new Drink(3, "Juice", 250, Rating.ONE_STAR));
+		
+		assertEquals(List.of(2, 1, 3), ids(index.findByPrice(null, null)));
+		assertEquals(List.of(1, 3), ids(index.findByPrice(new BigDecimal("1.99"), new BigDecimal("2.50"))));
+		// Bounds between cents round inwards.
+		assertEquals(List.of(1), ids(index.findByPrice(new BigDecimal("0.501"), new BigDecimal("2.499"))));
+	}
+	
+	@Test
+	void invertedRangesFindNothing() {
+		index.add(new Drink(1, "Tea", 199, Rating.FOUR_STAR));
+		index.add(new Food(2, "Cake", 399, Rating.TWO_STAR, TODAY));
+		
+		assertTrue(index.findByPrice(new BigDecimal("3"), new BigDecimal("1")).isEmpty());
+		// A range within a cent, rounded to an inverted range of units.
+		assertTrue(index.findByPrice(new BigDecimal("1.995"), new BigDecimal("1.995")).isEmpty());
+		assertTrue(index.findByBestBefore(TODAY.plusDays(1), TODAY.minusDays(1), TODAY).isEmpty());
+	}
+	
+	@Test
+	void undatedProductsAreBestBeforeToday() {
+		index.add(new Food(1, "Cake", 399, Rating.TWO_STAR, TODAY.minusDays(1)));
+		index.add(new Food(2, "Bread", 150, Rating.TWO_STAR, TODAY.plusDays(1)));
+		index.add(new Drink(3, "Tea", 199, Rating.FOUR_STAR));
+		
+		assertEquals(List.of(1, 3, 2), ids(index.findByBestBefore(null, null, TODAY)));
+		assertEquals(List.of(2), ids(index.findByBestBefore(TODAY.plusDays(1), null, TODAY)));
+		assertEquals(List.of(1), ids(index.findByBestBefore(null, TODAY.minusDays(1), TODAY)));
+		assertEquals(List.of(3), ids(index.findByBestBefore(TODAY, TODAY, TODAY)));
+	}
+	
+	@Test
+	void replacedAndRemovedProductsAreUnindexed() {
+		Product tea = new Drink(1, "Tea", 199, Rating.NOT_RATED);
+		Product cake = new Food(2, "Cake", 399, Rating.TWO_STAR, TODAY);
+		
+		index.add(tea);
+		index.add(cake);
+		index.replace(tea, tea.applyRating(Rating.FIVE_STAR));
+		index.remove(cake);
+		
+		assertTrue(index.findByRating(Rating.NOT_RATED).isEmpty());
+		assertEquals(List.of(1), ids(index.findByRating(Rating.FIVE_STAR)));
+		assertEquals(List.of(1), ids(index.findByPrice(null, null)));
+		assertEquals(List.of(1), ids(index.findByBestBefore(null, null, TODAY)));
+	}
+	
+	private static List<Integer> ids(List<Product> products) {
+		return products.stream().map(Product::getId).collect(Collectors.toList());
+	}
+}
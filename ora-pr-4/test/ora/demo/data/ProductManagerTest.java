@@ -0,0 +1,282 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProductManagerTest {
+	
+	@TempDir
+	Path folder;
+	
+	private CatalogFixture catalog;
+	
+	@BeforeEach
+	void createCatalog() throws IOException {
+		catalog = new CatalogFixture(folder);
+	}
+	
+	@AfterEach
+	void closeCatalog() {
+		catalog.close();
+	}
+	
+	@Test
+	void concurrentReviewsOfEveryStripeAreCounted() throws Exception {
+		int products = 500;
+		int threads = 8;
+		
+		for (int id = 1; id <= products; id++) {
+			catalog.drink(id, 0);
+		}
+		
+		ProductManager pm = catalog.set("lock.stripes", "16").set("catalog.shards", "4").open();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> results = new ArrayList<>();
+		
+		try {
+			for (int t = 0; t < threads; t++) {
+				int first = t * products / threads;
+				
+				// Every thread reviews every product, each one starting elsewhere, and
+				// takes the locks of every stripe now and then.
+				results.add(executor.submit(() -> {
+					for (int i = 0; i < products; i++) {
+						pm.reviewProduct((first + i) % products + 1, Rating.FIVE_STAR, "Review " + i);
+						
+						if (i % 50 == 0) {
+							assertEquals(products, pm.findProducts(new ProductQuery().limit(products)).getProducts().size());
+							pm.getDiscounts("en-GB");
+						}
+					}
+					return null;
+				}));
+			}
+			
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		assertEquals((long) products * threads, pm.getMetrics().getReviewCount());
+		
+		for (int id = 1; id <= products; id++) {
+			assertEquals(threads, pm.getReviewCount(id, Rating.FIVE_STAR));
+			assertEquals(Rating.FIVE_STAR, pm.findProduct(id).getRating());
+		}
+	}
+	
+	@Test
+	void invertedRangesFindNothing() throws IOException {
+		catalog.drink(1, 0);
+		
+		ProductManager pm = catalog.open();
+		
+		assertEquals(1, pm.findProductsByPrice(null, new BigDecimal("1")).size());
+		assertTrue(pm.findProductsByPrice(new BigDecimal("2"), new BigDecimal("1")).isEmpty());
+		assertTrue(pm.findProductsByBestBefore(LocalDate.now().plusDays(1), LocalDate.now().minusDays(1)).isEmpty());
+	}
+	
+	@Test
+	void batchReviewsAreAppliedInRequestOrder() throws Exception {
+		catalog.drink(1, 0).drink(2, 0).drink(3, 0);
+		
+		ProductManager pm = catalog.open();
+		List<Product> results = pm.reviewProducts(List.of(
+				new ReviewRequest(1, Rating.ONE_STAR, "First"),
+				new ReviewRequest(2, Rating.FIVE_STAR, "Second"),
+				new ReviewRequest(99, Rating.FIVE_STAR, "Unknown"),
+				new ReviewRequest(1, Rating.FIVE_STAR, null)));
+		
+		// Each request gets its product as reviewed by the whole batch.
+		assertEquals(4, results.size());
+		assertEquals(Rating.THREE_STAR, results.get(0).getRating());
+		assertEquals(Rating.FIVE_STAR, results.get(1).getRating());
+		assertNull(results.get(2));
+		assertEquals(results.get(0), results.get(3));
+		assertEquals(Rating.THREE_STAR, pm.findProduct(1).getRating());
+		assertEquals(1, pm.getReviewCount(1, Rating.ONE_STAR));
+		assertEquals(1, pm.getReviewCount(1, Rating.FIVE_STAR));
+		assertEquals(3, pm.getProductReport(1, "en-GB").lines().count());
+	}
+	
+	@Test
+	void batchReviewsRejectMissingRatings() {
+		assertThrows(NullPointerException.class, () -> new ReviewRequest(1, null, "No rating"));
+	}
+	
+	@Test
+	void lazyReviewsAreLoadedAgainWhenEvicted() throws Exception {
+		// Only the product files, with the rating of their reviews, are read at first.
+		catalog.drink(1, 4).drink(2, 1).reviews(1, "5,Great", "3,Fine").reviews(2, "1,Poor");
+		
+		ProductManager pm = catalog.set("reviews.lazy", "true").set("reviews.cache.size", "1").open();
+		
+		assertEquals(3, pm.getProductReport(1, "en-GB").lines().count());
+		assertEquals(Rating.FOUR_STAR, pm.findProduct(1).getRating());
+		assertEquals(2, pm.getProductReport(2, "en-GB").lines().count());
+		
+		// Product 1 was evicted by product 2, so its review is appended to the file.
+		pm.reviewProduct(1, Rating.ONE_STAR, "Broken");
+		
+		assertEquals(4, pm.getProductReport(1, "en-GB").lines().count());
+		assertEquals(Rating.THREE_STAR, pm.findProduct(1).getRating());
+		assertEquals(3, Files.readAllLines(catalog.getDataFolder().resolve("reviews1.csv")).size());
+		
+		CacheStats stats = pm.getReviewCacheStats();
+		assertEquals(3, stats.getMisses());
+		assertEquals(2, stats.getEvictions());
+		assertEquals(1, stats.getSize());
+	}
+	
+	@Test
+	void lazyReviewsAreAddedOnceWhenEvicted() throws Exception {
+		int products = 8;
+		int reviews = 300;
+		
+		for (int id = 1; id <= products; id++) {
+			catalog.drink(id, 0);
+		}
+		
+		// A single cached product, so reviews of other stripes keep evicting it.
+		ProductManager pm = catalog.set("reviews.lazy", "true").set("reviews.cache.size", "1").open();
+		ExecutorService executor = Executors.newFixedThreadPool(products);
+		List<Future<?>> results = new ArrayList<>();
+		
+		try {
+			for (int id = 1; id <= products; id++) {
+				int productId = id;
+				
+				results.add(executor.submit(() -> {
+					for (int i = 1; i <= reviews; i++) {
+						pm.reviewProduct(productId, Rating.FOUR_STAR, "Review " + i);
+						// Checked at once, as reviews evicted since are loaded again from the file.
+						assertEquals(i + 1, pm.getProductReport(productId, "en-GB").lines().count());
+					}
+					return null;
+				}));
+			}
+			
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		for (int id = 1; id <= products; id++) {
+			assertEquals(reviews, Files.readAllLines(catalog.getDataFolder().resolve("reviews" + id + ".csv")).size());
+			assertEquals(Rating.FOUR_STAR, pm.findProduct(id).getRating());
+		}
+	}
+	
+	@Test
+	void appendedReviewsAreReloaded() throws Exception {
+		catalog.drink(1, 5).reviews(1, "5,Great");
+		
+		ProductManager pm = watched().open();
+		
+		catalog.reviews(1, "1,Poor");
+		
+		await(() -> pm.getReviewCount(1, Rating.ONE_STAR) == 1);
+		assertEquals(1, pm.getReviewCount(1, Rating.FIVE_STAR));
+		assertEquals(Rating.THREE_STAR, pm.findProduct(1).getRating());
+	}
+	
+	@Test
+	void rewrittenReviewsKeepThosePosted() throws Exception {
+		catalog.drink(1, 5).reviews(1, "5,Great");
+		
+		ProductManager pm = watched().open();
+		
+		pm.reviewProduct(1, Rating.ONE_STAR, "Posted");
+		// The file no longer starts with the review read, so it is counted again.
+		Files.writeString(catalog.getDataFolder().resolve("reviews1.csv"), "4,Good\n5,Great\n");
+		
+		await(() -> pm.getReviewCount(1, Rating.FOUR_STAR) == 1);
+		assertEquals(1, pm.getReviewCount(1, Rating.FIVE_STAR));
+		assertEquals(1, pm.getReviewCount(1, Rating.ONE_STAR));
+		assertEquals(Rating.THREE_STAR, pm.findProduct(1).getRating());
+	}
+	
+	@Test
+	void createdAndDeletedProductsAreReloaded() throws Exception {
+		catalog.drink(1, 0);
+		
+		ProductManager pm = watched().open();
+		
+		catalog.reviews(2, "2,Bland").drink(2, 2);
+		Files.delete(catalog.getDataFolder().resolve("product1.csv"));
+		
+		await(() -> pm.findProducts(new ProductQuery()).getProducts().stream().map(Product::getId).collect(Collectors.toList()).equals(List.of(2)));
+		assertEquals(1, pm.getReviewCount(2, Rating.TWO_STAR));
+		assertEquals(Rating.TWO_STAR, pm.findProduct(2).getRating());
+		assertThrows(ProductManagerException.class, () -> pm.findProduct(1));
+	}
+	
+	private CatalogFixture watched() {
+		return catalog.set("data.watch", "true").set("data.watch.debounce.millis", "50");
+	}
+	
+	/**
+	 * Waits for the data folder watcher to apply the changes.
+	 */
+	private static void await(Callable<Boolean> condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		
+		while (!check(condition)) {
+			if (System.nanoTime() > deadline) {
+				fail("Changes not applied");
+			}
+			Thread.sleep(20);
+		}
+	}
+	
+	private static boolean check(Callable<Boolean> condition) {
+		try {
+			return condition.call();
+		} catch (Exception e) {
+			return false;
+		}
+	}
+}
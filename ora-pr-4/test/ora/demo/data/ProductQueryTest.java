@@ -0,0 +1,107 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class ProductQueryTest {
+	private static final LocalDate TODAY = LocalDate.of(2021, 6, 1);
+	
+	private final List<Product> products = List.of(
+			new Drink(1, "Tea", 199, Rating.FOUR_STAR),
+			new Food(2, "Cake", 399, Rating.TWO_STAR, TODAY.plusDays(2)),
+			new Drink(3, "Coffee", 199, Rating.FIVE_STAR),
+			new Food(4, "Bread", 150, Rating.FOUR_STAR, TODAY),
+			new Drink(5, "Water", 50, Rating.NOT_RATED));
+	
+	@Test
+	void filtersProducts() {
+		assertEquals(List.of(1, 3, 4), ids(new ProductQuery().ratingAtLeast(Rating.FOUR_STAR)));
+		assertEquals(List.of(2, 5), ids(new ProductQuery().ratings(Rating.TWO_STAR, Rating.NOT_RATED)));
+		assertEquals(List.of(2, 4), ids(new ProductQuery().type(ProductQuery.Type.FOOD)));
+		assertEquals(List.of(1, 3, 4), ids(new ProductQuery().priceBetween(new BigDecimal("1.50"), new BigDecimal("2"))));
+		assertEquals(List.of(2), ids(new ProductQuery().priceBetween(new BigDecimal("3.985"), null)));
+		assertEquals(List.of(4), ids(new ProductQuery().bestBeforeBetween(null, TODAY.plusDays(1))));
+		assertEquals(List.of(3), ids(new ProductQuery().type(ProductQuery.Type.DRINK).ratingAtLeast(Rating.FIVE_STAR)));
+	}
+	
+	@Test
+	void sortsByKeyThenId() {
+		assertEquals(List.of(5, 4, 1, 3, 2), ids(new ProductQuery().sortBy(ProductQuery.Sort.PRICE, false)));
+		assertEquals(List.of(2, 1, 3, 4, 5), ids(new ProductQuery().sortBy(ProductQuery.Sort.PRICE, true)));
+		assertEquals(List.of(4, 2, 3, 1, 5), ids(new ProductQuery().sortBy(ProductQuery.Sort.NAME, false)));
+	}
+	
+	@Test
+	void pagesFollowEachOther() {
+		ProductQuery query = new ProductQuery().sortBy(ProductQuery.Sort.PRICE, false).limit(2);
+		List<Integer> ids = new ArrayList<>();
+		int pages = 0;
+		
+		for (ProductPage page = query.select(products); ; page = page.getNext().select(products)) {
+			page.getProducts().forEach(product -> ids.add(product.getId()));
+			pages++;
+			
+			if (!page.hasNext()) {
+				break;
+			}
+		}
+		
+		assertEquals(3, pages);
+		assertEquals(List.of(5, 4, 1, 3, 2), ids);
+	}
+	
+	@Test
+	void lastFullPageHasNoNext() {
+		ProductPage page = new ProductQuery().limit(5).select(products);
+		
+		assertEquals(5, page.getProducts().size());
+		assertFalse(page.hasNext());
+		assertTrue(new ProductQuery().limit(4).select(products).hasNext());
+	}
+	
+	@Test
+	void largestLimitSelectsEveryProduct() {
+		ProductPage page = new ProductQuery().limit(Integer.MAX_VALUE).select(products);
+		
+		assertEquals(List.of(1, 2, 3, 4, 5), page.getProducts().stream().map(Product::getId).collect(Collectors.toList()));
+		assertFalse(page.hasNext());
+	}
+	
+	@Test
+	void rejectsInvalidLimits() {
+		assertThrows(IllegalArgumentException.class, () -> new ProductQuery().limit(0));
+	}
+	
+	private List<Integer> ids(ProductQuery query) {
+		return query.limit(products.size()).select(products).getProducts().stream()
+				.map(Product::getId)
+				.collect(Collectors.toList());
+	}
+}
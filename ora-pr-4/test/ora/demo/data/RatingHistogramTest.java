@@ -0,0 +1,100 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RatingHistogramTest {
+	
+	@Test
+	void matchesTheAverageOfEveryReview() {
+		Rating[] ratings = Rating.values();
+		Random random = new Random(11);
+		RatingHistogram histogram = new RatingHistogram(List.of());
+		List<Review> reviews = new ArrayList<>();
+		
+		for (int i = 0; i < 500; i++) {
+			Rating rating = ratings[random.nextInt(ratings.length)];
+			
+			histogram.add(rating);
+			reviews.add(new Review(rating, ""));
+			
+			// The rating reviewProduct used to compute from every review.
+			double average = reviews.stream().mapToInt(review -> review.getRating().ordinal()).average().orElse(0);
+			assertEquals(Rateable.convert((int) Math.round(average)), histogram.getRating());
+		}
+		
+		assertEquals(500, histogram.getTotal());
+		assertEquals(reviews.stream().filter(review -> review.getRating() == Rating.TWO_STAR).count(),
+				histogram.getCount(Rating.TWO_STAR));
+	}
+	
+	@Test
+	void emptyHistogramIsNotRated() {
+		RatingHistogram histogram = new RatingHistogram(List.of());
+		
+		assertEquals(0, histogram.getMean());
+		assertEquals(Rating.NOT_RATED, histogram.getRating());
+	}
+	
+	@Test
+	void meanIsRoundedHalfUp() {
+		RatingHistogram histogram = new RatingHistogram(
+				List.of(new Review(Rating.FOUR_STAR, "a"), new Review(Rating.THREE_STAR, "b")));
+		
+		assertEquals(3.5, histogram.getMean());
+		assertEquals(Rating.FOUR_STAR, histogram.getRating());
+	}
+	
+	@Test
+	void reviewsAreOnlyLoadedOnce() {
+		RatingHistogram histogram = new RatingHistogram();
+		
+		assertFalse(histogram.isLoaded());
+		histogram.load(List.of(new Review(Rating.ONE_STAR, "a")));
+		histogram.add(Rating.FIVE_STAR);
+		// Loaded again after an eviction, the reviews are already counted.
+		histogram.load(List.of(new Review(Rating.ONE_STAR, "a"), new Review(Rating.FIVE_STAR, "b")));
+		
+		assertTrue(histogram.isLoaded());
+		assertEquals(2, histogram.getTotal());
+		assertEquals(Rating.THREE_STAR, histogram.getRating());
+	}
+	
+	@Test
+	void copiesAreIndependent() {
+		RatingHistogram histogram = new RatingHistogram(List.of(new Review(Rating.TWO_STAR, "a")));
+		RatingHistogram copy = new RatingHistogram(histogram);
+		
+		copy.add(Rating.FIVE_STAR);
+		
+		assertEquals(1, histogram.getTotal());
+		assertEquals(2, copy.getTotal());
+		assertTrue(copy.isLoaded());
+		assertEquals(1, copy.toMap().get(Rating.FIVE_STAR));
+		assertEquals(0, histogram.toMap().get(Rating.FIVE_STAR));
+	}
+}
@@ -0,0 +1,155 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportPipelineTest {
+	
+	@TempDir
+	Path folder;
+	
+	private final AtomicInteger renders = new AtomicInteger();
+	private ReportPipeline pipeline;
+	
+	@AfterEach
+	void closePipeline() {
+		if (pipeline != null) {
+			pipeline.close();
+		}
+	}
+	
+	@Test
+	void coalescesRequestsOfTheSameReport() throws Exception {
+		pipeline = new ReportPipeline(this::render, 2, 16, 200, 64);
+		List<CompletableFuture<Path>> reports = new ArrayList<>();
+		
+		for (int i = 0; i < 5; i++) {
+			reports.add(pipeline.submit(1, "en-GB", folder.resolve("report" + i + ".txt")));
+		}
+		CompletableFuture<Path> other = pipeline.submit(1, "fr-FR", folder.resolve("other.txt"));
+		
+		for (int i = 0; i < 5; i++) {
+			assertEquals("1 en-GB", Files.readString(get(reports.get(i))));
+		}
+		assertEquals("1 fr-FR", Files.readString(get(other)));
+		assertEquals(2, renders.get());
+	}
+	
+	@Test
+	void writesAFileRequestedTwiceOnce() throws Exception {
+		pipeline = new ReportPipeline(this::render, 1, 16, 0, 64);
+		Path file = folder.resolve("report.txt");
+		
+		CompletableFuture<Path> first = pipeline.submitNow(1, "en-GB", file);
+		CompletableFuture<Path> second = pipeline.submitNow(2, "en-GB", file);
+		
+		assertEquals(file, get(first));
+		assertEquals(file, get(second));
+		assertEquals("2 en-GB", Files.readString(file));
+	}
+	
+	@Test
+	void failuresCompleteTheirReportsOnly() throws Exception {
+		pipeline = new ReportPipeline(this::render, 1, 16, 0, 64);
+		
+		CompletableFuture<Path> missing = pipeline.submitNow(-1, "en-GB", folder.resolve("missing.txt"));
+		CompletableFuture<Path> unwritable = pipeline.submitNow(1, "en-GB", folder.resolve("none").resolve("report.txt"));
+		CompletableFuture<Path> written = pipeline.submitNow(2, "en-GB", folder.resolve("report.txt"));
+		
+		assertTrue(cause(missing) instanceof ProductManagerException);
+		assertTrue(cause(unwritable) instanceof IOException);
+		assertEquals("2 en-GB", Files.readString(get(written)));
+	}
+	
+	@Test
+	void closeRejectsPendingAndLaterRequests() throws Exception {
+		pipeline = new ReportPipeline(this::render, 1, 16, 60_000, 64);
+		
+		CompletableFuture<Path> pending = pipeline.submit(1, "en-GB", folder.resolve("report.txt"));
+		pipeline.close();
+		
+		assertTrue(cause(pending) instanceof RejectedExecutionException);
+		assertTrue(cause(pipeline.submit(1, "en-GB", folder.resolve("report.txt"))) instanceof RejectedExecutionException);
+		assertTrue(cause(pipeline.submitNow(1, "en-GB", folder.resolve("report.txt"))) instanceof RejectedExecutionException);
+	}
+	
+	@Test
+	void renderingWhileClosedDoesNotHang() throws Exception {
+		CountDownLatch rendering = new CountDownLatch(1);
+		CountDownLatch closed = new CountDownLatch(1);
+		
+		pipeline = new ReportPipeline((productId, languageTag) -> {
+			rendering.countDown();
+			await(closed);
+			return "late";
+		}, 1, 16, 0, 64);
+		
+		CompletableFuture<CompletableFuture<Path>> report = CompletableFuture.supplyAsync(
+				() -> pipeline.submitNow(1, "en-GB", folder.resolve("report.txt")));
+		
+		await(rendering);
+		pipeline.close();
+		closed.countDown();
+		
+		assertTrue(cause(report.get(10, TimeUnit.SECONDS)) instanceof RejectedExecutionException);
+	}
+	
+	private String render(int productId, String languageTag) throws ProductManagerException {
+		if (productId < 0) {
+			throw new ProductManagerException("Product with id " + productId + " not found");
+		}
+		
+		renders.incrementAndGet();
+		return productId + " " + languageTag;
+	}
+	
+	private static Path get(CompletableFuture<Path> report) throws Exception {
+		return report.get(10, TimeUnit.SECONDS);
+	}
+	
+	private static Throwable cause(CompletableFuture<Path> report) {
+		return assertThrows(ExecutionException.class, () -> get(report)).getCause();
+	}
+	
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ReviewCacheTest {
+	
+	@Test
+	void loadsOnMissAndCountsHits() {
+		ReviewCache cache = new ReviewCache(2);
+		List<Review> reviews = List.of(new Review(Rating.FOUR_STAR, "Nice"));
+		
+		assertSame(reviews, cache.get(1, id -> reviews));
+		assertSame(reviews, cache.get(1, id -> List.of()));
+		assertSame(reviews, cache.peek(1));
+		
+		CacheStats stats = cache.getStats();
+		assertEquals(1, stats.getHits());
+		assertEquals(1, stats.getMisses());
+		assertEquals(1, stats.getSize());
+		assertEquals(0.5, stats.getHitRate());
+	}
+	
+	@Test
+	void evictsTheLeastRecentlyUsedProduct() {
+		ReviewCache cache = new ReviewCache(2);
+		
+		cache.get(1, id -> new ArrayList<>());
+		cache.get(2, id -> new ArrayList<>());
+		cache.get(1, id -> new ArrayList<>());
+		cache.get(3, id -> new ArrayList<>());
+		
+		assertNull(cache.peek(2));
+		assertEquals(1, cache.getStats().getEvictions());
+		assertEquals(2, cache.getStats().getSize());
+	}
+	
+	@Test
+	void keepsTheReviewsLoadedFirst() {
+		ReviewCache cache = new ReviewCache(2);
+		List<Review> first = new ArrayList<>();
+		
+		// Another thread loading the same product while this one loads it.
+		List<Review> reviews = cache.get(1, id -> {
+			cache.get(1, other -> first);
+			return new ArrayList<>();
+		});
+		
+		assertSame(first, reviews);
+		assertEquals(2, cache.getStats().getMisses());
+	}
+	
+	@Test
+	void invalidatedReviewsAreLoadedAgain() {
+		ReviewCache cache = new ReviewCache(2);
+		
+		cache.get(1, id -> new ArrayList<>());
+		cache.get(2, id -> new ArrayList<>());
+		cache.invalidate(1);
+		
+		assertNull(cache.peek(1));
+		cache.clear();
+		assertEquals(0, cache.getStats().getSize());
+		assertEquals(0, cache.getStats().getEvictions());
+	}
+}
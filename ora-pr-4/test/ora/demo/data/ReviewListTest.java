@@ -0,0 +1,141 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ReviewListTest {
+	
+	@Test
+	void keepsReportOrder() {
+		ReviewList reviews = new ReviewList();
+		
+		reviews.add(new Review(Rating.TWO_STAR, "a"));
+		reviews.add(new Review(Rating.FIVE_STAR, "b"));
+		reviews.add(new Review(Rating.TWO_STAR, "c"));
+		reviews.add(new Review(Rating.NOT_RATED, "d"));
+		reviews.add(new Review(Rating.FIVE_STAR, "e"));
+		
+		List<Review> expected = List.of(new Review(Rating.FIVE_STAR, "b"), new Review(Rating.FIVE_STAR, "e"),
+				new Review(Rating.TWO_STAR, "a"), new Review(Rating.TWO_STAR, "c"), new Review(Rating.NOT_RATED, "d"));
+		
+		assertEquals(5, reviews.size());
+		assertEquals(expected, reviews);
+		assertEquals(expected, new ArrayList<>(reviews));
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i), reviews.get(i));
+		}
+	}
+	
+	@Test
+	void matchesSortedReviews() {
+		ReviewList reviews = new ReviewList();
+		List<Review> sorted = new ArrayList<>();
+		Rating[] ratings = Rating.values();
+		Random random = new Random(7);
+		
+		for (int i = 0; i < 1000; i++) {
+			Review review = new Review(ratings[random.nextInt(ratings.length)], "r" + i);
+			
+			reviews.add(review);
+			sorted.add(review);
+		}
+		// Stable, so reviews of a rating keep their insertion order.
+		Collections.sort(sorted);
+		
+		assertEquals(sorted, reviews);
+	}
+	
+	@Test
+	void copiesAreIndependent() {
+		ReviewList reviews = new ReviewList();
+		reviews.add(new Review(Rating.THREE_STAR, "a"));
+		
+		ReviewList copy = new ReviewList(reviews);
+		copy.add(new Review(Rating.THREE_STAR, "b"));
+		reviews.add(new Review(Rating.ONE_STAR, "c"));
+		
+		assertEquals(List.of(new Review(Rating.THREE_STAR, "a"), new Review(Rating.ONE_STAR, "c")), reviews);
+		assertEquals(List.of(new Review(Rating.THREE_STAR, "a"), new Review(Rating.THREE_STAR, "b")), copy);
+	}
+	
+	@Test
+	void copiesOtherCollectionsInReportOrder() {
+		ReviewList reviews = new ReviewList(List.of(new Review(Rating.ONE_STAR, "a"), new Review(Rating.FOUR_STAR, "b")));
+		
+		assertEquals(List.of(new Review(Rating.FOUR_STAR, "b"), new Review(Rating.ONE_STAR, "a")), reviews);
+	}
+	
+	@Test
+	void rejectsInvalidIndexes() {
+		ReviewList reviews = new ReviewList();
+		
+		assertThrows(IndexOutOfBoundsException.class, () -> reviews.get(0));
+		reviews.add(new Review(Rating.ONE_STAR, "a"));
+		assertThrows(IndexOutOfBoundsException.class, () -> reviews.get(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> reviews.get(-1));
+		assertThrows(UnsupportedOperationException.class, () -> reviews.add(0, new Review(Rating.ONE_STAR, "b")));
+	}
+	
+	@Test
+	void onlyClearRemovesReviews() {
+		ReviewList reviews = new ReviewList();
+		reviews.add(new Review(Rating.ONE_STAR, "a"));
+		reviews.add(new Review(Rating.FIVE_STAR, "b"));
+		
+		assertThrows(UnsupportedOperationException.class, () -> reviews.remove(0));
+		assertThrows(UnsupportedOperationException.class, () -> reviews.remove(new Review(Rating.ONE_STAR, "a")));
+		assertThrows(UnsupportedOperationException.class, () -> reviews.removeIf(review -> true));
+		assertEquals(2, reviews.size());
+		
+		reviews.clear();
+		assertTrue(reviews.isEmpty());
+		
+		reviews.add(new Review(Rating.TWO_STAR, "c"));
+		assertEquals(List.of(new Review(Rating.TWO_STAR, "c")), reviews);
+	}
+	
+	@Test
+	void iteratorFailsFastAndAtTheEnd() {
+		ReviewList reviews = new ReviewList();
+		reviews.add(new Review(Rating.ONE_STAR, "a"));
+		
+		Iterator<Review> iterator = reviews.iterator();
+		assertTrue(iterator.hasNext());
+		assertEquals(new Review(Rating.ONE_STAR, "a"), iterator.next());
+		assertFalse(iterator.hasNext());
+		assertThrows(NoSuchElementException.class, iterator::next);
+		
+		Iterator<Review> stale = reviews.iterator();
+		reviews.add(new Review(Rating.TWO_STAR, "b"));
+		assertThrows(ConcurrentModificationException.class, stale::next);
+	}
+}
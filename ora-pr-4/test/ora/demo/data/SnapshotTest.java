@@ -0,0 +1,170 @@
+ /*
+  * Copyright (C) 2021  bruno
+  * 
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  * 
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU General Public License for more details.
+  * 
+  * You should have received a copy of the GNU General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package ora.demo.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SnapshotTest {
+	private static final LocalDate BEST_BEFORE = LocalDate.of(2021, 6, 1);
+	
+	@TempDir
+	Path folder;
+	
+	@Test
+	void writesAndReadsTheCatalog() throws IOException {
+		Path file = folder.resolve("1.snapshot");
+		
+		new Snapshot(catalog(), Map.of(), 7, true).write(file);
+		Snapshot snapshot = Snapshot.read(file, UnaryOperator.identity(), true);
+		
+		assertEquals(7, snapshot.getJournalSegment());
+		assertTrue(snapshot.hasReviews());
+		assertFalse(Files.exists(folder.resolve("1.snapshot.part")));
+		
+		Map<Integer, Product> products = byId(snapshot.getProducts());
+		Product tea = products.get(1);
+		Product cake = products.get(2);
+		
+		assertTrue(tea instanceof Drink);
+		assertEquals("Tea", tea.getName());
+		assertEquals(199, tea.getPriceUnits());
+		assertEquals(Rating.FOUR_STAR, tea.getRating());
+		assertTrue(cake instanceof Food);
+		assertEquals("Cake ★", cake.getName());
+		assertEquals(BEST_BEFORE, cake.getBestBefore());
+		
+		assertEquals(List.of(new Review(Rating.FIVE_STAR, "Nice"), new Review(Rating.THREE_STAR, "Nice"),
+				new Review(Rating.ONE_STAR, "Cold, \"bitter\"")), snapshot.getProducts().get(tea));
+		assertEquals(List.of(), snapshot.getProducts().get(cake));
+		assertTrue(snapshot.getPosted().isEmpty());
+	}
+	
+	@Test
+	void postedReviewsAreKeptApart() throws IOException {
+		Path file = folder.resolve("1.snapshot");
+		List<Review> posted = List.of(new Review(Rating.FIVE_STAR, "Nice"), new Review(Rating.TWO_STAR, "Posted"));
+		
+		new Snapshot(catalog(), Map.of(1, posted), 0, true).write(file);
+		Snapshot snapshot = Snapshot.read(file, UnaryOperator.identity(), true);
+		
+		assertEquals(Map.of(1, posted), snapshot.getPosted());
+		assertEquals(3, snapshot.getProducts().get(byId(snapshot.getProducts()).get(1)).size());
+		assertTrue(Snapshot.read(file, UnaryOperator.identity(), false).getPosted().isEmpty());
+	}
+	
+	@Test
+	void commentsAreMappedOnRead() throws IOException {
+		Path file = folder.resolve("1.snapshot");
+		String canonical = new String("Nice");
+		
+		new Snapshot(catalog(), Map.of(), 0, true).write(file);
+		Snapshot snapshot = Snapshot.read(file, c -> c.equals(canonical) ? canonical : c, true);
+		List<Review> reviews = snapshot.getProducts().get(byId(snapshot.getProducts()).get(1));
+		
+		assertSame(canonical, reviews.get(0).getComments());
+		assertSame(canonical, reviews.get(1).getComments());
+	}
+	
+	@Test
+	void reviewsCanBeSkippedOnRead() throws IOException {
+		Path file = folder.resolve("1.snapshot");
+		
+		new Snapshot(catalog(), Map.of(), 0, true).write(file);
+		Snapshot snapshot = Snapshot.read(file, UnaryOperator.identity(), false);
+		
+		assertEquals(2, snapshot.getProducts().size());
+		snapshot.getProducts().values().forEach(reviews -> assertNull(reviews));
+	}
+	
+	@Test
+	void snapshotsWithoutReviewsAreFlagged() throws IOException {
+		Path file = folder.resolve("1.snapshot");
+		Map<Product, List<Review>> catalog = catalog();
+		
+		// Values are ignored, as with reviews not loaded yet.
+		catalog.replaceAll((product, reviews) -> null);
+		new Snapshot(catalog, Map.of(), 3, false).write(file);
+		Snapshot snapshot = Snapshot.read(file, UnaryOperator.identity(), true);
+		
+		assertFalse(snapshot.hasReviews());
+		assertEquals(3, snapshot.getJournalSegment());
+		snapshot.getProducts().values().forEach(reviews -> assertEquals(List.of(), reviews));
+	}
+	
+	@Test
+	void rejectsCorruptedSnapshots() throws IOException {
+		Path file = folder.resolve("1.snapshot");
+		
+		new Snapshot(catalog(), Map.of(), 0, true).write(file);
+		try (RandomAccessFile out = new RandomAccessFile(file.toFile(), "rw")) {
+			out.seek(out.length() / 2);
+			int b = out.read();
+			out.seek(out.length() / 2);
+			out.write(b ^ 0xFF);
+		}
+		
+		IOException e = assertThrows(IOException.class, () -> Snapshot.read(file, UnaryOperator.identity(), true));
+		assertTrue(e.getMessage().startsWith("Snapshot checksum mismatch"));
+	}
+	
+	@Test
+	void rejectsTruncatedSnapshots() throws IOException {
+		Path file = folder.resolve("1.snapshot");
+		
+		Files.write(file, new byte[10]);
+		assertThrows(IOException.class, () -> Snapshot.read(file, UnaryOperator.identity(), true));
+	}
+	
+	private static Map<Product, List<Review>> catalog() {
+		Map<Product, List<Review>> catalog = new HashMap<>();
+		ReviewList reviews = new ReviewList();
+		
+		reviews.add(new Review(Rating.ONE_STAR, "Cold, \"bitter\""));
+		reviews.add(new Review(Rating.FIVE_STAR, "Nice"));
+		reviews.add(new Review(Rating.THREE_STAR, "Nice"));
+		
+		catalog.put(new Drink(1, "Tea", 199, Rating.FOUR_STAR), reviews);
+		catalog.put(new Food(2, "Cake ★", 399, Rating.NOT_RATED, BEST_BEFORE), new ReviewList());
+		return catalog;
+	}
+	
+	private static Map<Integer, Product> byId(Map<Product, List<Review>> products) {
+		Map<Integer, Product> byId = new HashMap<>();
+		
+		products.keySet().forEach(product -> byId.put(product.getId(), product));
+		return byId;
+	}
+}